@@ -0,0 +1,67 @@
+package io.everon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates the synthetic specs and Apigee listings used by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static String spec(int size) {
+        StringBuilder spec = new StringBuilder(size + 256)
+                .append("openapi: 3.0.2\ninfo:\n  title: Benchmark API\n  version: 1.0.0\npaths:\n");
+        for (int i = 0; spec.length() < size; i++) {
+            spec.append("  /chargers/").append(i).append(":\n")
+                    .append("    get:\n")
+                    .append("      summary: Get charger ").append(i).append('\n')
+                    .append("      responses:\n")
+                    .append("        '200':\n")
+                    .append("          description: Charger ").append(i).append('\n');
+        }
+        return spec.toString();
+    }
+
+    static File specFile(String specContent) throws IOException {
+        File specFile = Files.createTempFile("benchmark-spec", ".yaml").toFile();
+        Files.write(specFile.toPath(), specContent.getBytes(StandardCharsets.UTF_8));
+        return specFile;
+    }
+
+    static String specsFolderListing(int entries) {
+        StringBuilder listing = new StringBuilder("{\"id\":\"folder\",\"kind\":\"Folder\",\"name\":\"/orgs/benchmark\",\"contents\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                listing.append(',');
+            }
+            listing.append("{\"id\":\"").append(100000 + i).append("\",\"kind\":\"Doc\",\"name\":\"Benchmark API ")
+                    .append(i).append("\",\"created\":\"2021-03-01T10:15:30.000Z\",")
+                    .append("\"modified\":\"2021-03-02T10:15:30.000Z\",\"etag\":\"").append(i)
+                    .append("\",\"self\":\"/organizations/benchmark/specs/doc/").append(100000 + i)
+                    .append("\",\"content\":\"/organizations/benchmark/specs/doc/").append(100000 + i)
+                    .append("/content\"}");
+        }
+        return listing.append("]}").toString();
+    }
+
+    static String apiDocsListing(int entries) {
+        StringBuilder listing = new StringBuilder("{\"status\":\"success\",\"data\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                listing.append(',');
+            }
+            listing.append("{\"id\":").append(200000 + i).append(",\"siteId\":\"benchmark-portal\",")
+                    .append("\"title\":\"Benchmark API ").append(i).append("\",")
+                    .append("\"description\":\"Generated API doc ").append(i).append("\",")
+                    .append("\"published\":true,\"specId\":\"Benchmark API ").append(i).append("\",")
+                    .append("\"modified\":1614680130000}");
+        }
+        return listing.append("]}").toString();
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.everon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparison of downloaded spec content, held as bytes, with the local spec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContentComparisonBenchmark {
+
+    @Param({"10240", "1048576", "10485760", "52428800"})
+    private int specSize;
+
+    private byte[] remoteContent;
+    private String localContent;
+    private File localSpecFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        localContent = BenchmarkData.spec(specSize);
+        localSpecFile = BenchmarkData.specFile(localContent);
+        remoteContent = localContent.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        localSpecFile.delete();
+    }
+
+    @Benchmark
+    public boolean stringEquals() {
+        return new String(remoteContent, StandardCharsets.UTF_8).equals(localContent);
+    }
+
+    @Benchmark
+    public boolean stringEqualsFromFile() throws IOException {
+        String fileContent = new String(Files.readAllBytes(localSpecFile.toPath()), StandardCharsets.UTF_8);
+        return new String(remoteContent, StandardCharsets.UTF_8).equals(fileContent);
+    }
+
+    @Benchmark
+    public boolean streamEqualsFromFile() throws IOException {
+        try (InputStream remote = new ByteArrayInputStream(remoteContent);
+             InputStream local = new FileInputStream(localSpecFile)) {
+            return ApigeeHttpClient.contentEquals(remote, local);
+        }
+    }
+
+    @Benchmark
+    public String canonicalHashFromFile() {
+        return SpecCanonicalizer.canonicalHash(localSpecFile);
+    }
+
+}
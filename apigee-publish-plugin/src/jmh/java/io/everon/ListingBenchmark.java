@@ -0,0 +1,62 @@
+package io.everon;
+
+import groovy.json.JsonSlurper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the spec folder and API doc listings returned by Apigee and indexing them in a {@link RemoteCatalog}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ListingBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int entries;
+
+    private String specsFolderListing;
+    private String apiDocsListing;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        specsFolderListing = BenchmarkData.specsFolderListing(entries);
+        apiDocsListing = BenchmarkData.apiDocsListing(entries);
+    }
+
+    @Benchmark
+    public Object parseSpecsFolder() {
+        return new JsonSlurper().parseText(specsFolderListing);
+    }
+
+    @Benchmark
+    public Object parseApiDocs() {
+        return new JsonSlurper().parseText(apiDocsListing);
+    }
+
+    @Benchmark
+    public ListingReader.Listing readSpecsFolder() {
+        return ListingReader.read(new StringReader(specsFolderListing), "contents", List.of("id", "name"));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public RemoteCatalog parseAndIndexCatalog() {
+        Map<String, Object> specsFolder = (Map<String, Object>) new JsonSlurper().parseText(specsFolderListing);
+        Map<String, Object> apiDocs = (Map<String, Object>) new JsonSlurper().parseText(apiDocsListing);
+        return RemoteCatalog.from(specsFolder, (List<Map<String, Object>>) apiDocs.get("data"));
+    }
+
+}
@@ -0,0 +1,55 @@
+package io.everon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading, titling and hashing of a spec before anything is sent to Apigee.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpecFileBenchmark {
+
+    @Param({"10240", "1048576", "10485760", "52428800"})
+    private int specSize;
+
+    private File specFile;
+    private String[] specFilePaths;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        specFile = BenchmarkData.specFile(BenchmarkData.spec(specSize));
+        specFilePaths = new String[]{specFile.getPath()};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        specFile.delete();
+    }
+
+    @Benchmark
+    public String readSpecFilesAndHash() {
+        Map<String, SpecFile> specFiles = ApigeePublishPlugin.readSpecFiles(specFilePaths);
+        return specFiles.values().iterator().next().getHash();
+    }
+
+    @Benchmark
+    public String findSpecTitle() {
+        return ApigeePublishPlugin.findSpecTitle(specFile);
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.everon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the snakeyaml event based title extraction with the regular expression it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpecTitleBenchmark {
+
+    @Param({"10240", "1048576", "10485760"})
+    private int specSize;
+
+    private String specContent;
+    private File specFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        specContent = BenchmarkData.spec(specSize);
+        specFile = BenchmarkData.specFile(specContent);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        specFile.delete();
+    }
+
+    @Benchmark
+    public String regexFromContent() {
+        return findSpecTitleWithRegex(specContent);
+    }
+
+    @Benchmark
+    public String eventParserFromContent() {
+        return SpecMetadataReader.read(specContent).getTitle();
+    }
+
+    @Benchmark
+    public String regexFromFile() throws IOException {
+        return findSpecTitleWithRegex(new String(Files.readAllBytes(specFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String eventParserFromFile() {
+        return SpecMetadataReader.read(specFile).getTitle();
+    }
+
+    private static String findSpecTitleWithRegex(String openApiYaml) {
+        Pattern pattern = Pattern.compile("title:(.*?)\n", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(openApiYaml);
+        if (matcher.find()) {
+            return matcher.group(1).replace("\"", "").trim();
+        }
+        throw new RuntimeException("Could not find title field in spec content: " + openApiYaml);
+    }
+
+}
@@ -1,241 +1,457 @@
 package io.everon
 
+import groovy.json.JsonException
 import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
 
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
 import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
 
 class ApigeeHttpClient {
 
+    private static final Logger LOGGER = Logging.getLogger(ApigeeHttpClient)
     private static final String LOGIN_URL = "https://login.apigee.com/oauth/token";
     private static final String BASE_ORGANIZATIONS_URL = "https://apigee.com/dapi/api/organizations";
     private static final String BASE_PORTALS_URL = "https://apigee.com/portals/api/sites";
 
+    static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10)
+    static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60)
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024
+    private static final long MIN_UPLOAD_BYTES_PER_SECOND = 64 * 1024
+
     String loginUrl
     String specFolderUrl
     String specContentUrlTemplate
     String specDocUrl
     String apiDocsUrl
     String apiDocSnapshotUrlTemplate
+    String organizationName
     String portalName
+    Duration readTimeout
+    HttpClient httpClient
+    RetryPolicy retryPolicy = new RetryPolicy()
+    RequestBudget requestBudget
+    HttpResponseCache responseCache
+    boolean compression = true
+    boolean compressUploads = false
+    boolean semanticComparison = false
+    CanonicalHashCache canonicalHashes
+    private volatile boolean compressedUploadsRejected = false
+    PublishMetrics metrics
+    String targetName
 
     ApigeeHttpClient(String organizationName, String portalName) {
+        this(organizationName, portalName, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT)
+    }
+
+    ApigeeHttpClient(String organizationName, String portalName, Duration connectTimeout, Duration readTimeout) {
+        this(organizationName, portalName, newHttpClient(connectTimeout), readTimeout)
+    }
+
+    ApigeeHttpClient(String organizationName, String portalName, HttpClient httpClient, Duration readTimeout) {
 
+        this.httpClient = httpClient
+        this.organizationName = organizationName
         this.portalName = portalName
-        loginUrl = LOGIN_URL
-        specFolderUrl = BASE_ORGANIZATIONS_URL + "/${organizationName}/specs/folder/home"
-        specContentUrlTemplate = BASE_ORGANIZATIONS_URL + "/${organizationName}/specs/doc/<id>/content"
-        specDocUrl = BASE_ORGANIZATIONS_URL + "/${organizationName}/specs/doc"
-        apiDocsUrl = BASE_PORTALS_URL + "/${portalName}/apidocs"
-        apiDocSnapshotUrlTemplate = BASE_PORTALS_URL + "/${portalName}/apidocs/<api_doc_id>/snapshot"
+        this.readTimeout = readTimeout
+        useUrls(LOGIN_URL, BASE_ORGANIZATIONS_URL, BASE_PORTALS_URL)
+
+    }
+
+    /**
+     * Sends all calls, including login, to the given base URL instead of Apigee, e.g. to a simulator.
+     */
+    void useBaseUrl(String baseUrl) {
+        def url = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl
+        useUrls(url + "/oauth/token", url + "/dapi/api/organizations", url + "/portals/api/sites")
+    }
+
+    private void useUrls(String loginUrl, String organizationsUrl, String portalsUrl) {
+        this.loginUrl = loginUrl
+        specFolderUrl = organizationsUrl + "/${organizationName}/specs/folder/home"
+        specContentUrlTemplate = organizationsUrl + "/${organizationName}/specs/doc/<id>/content"
+        specDocUrl = organizationsUrl + "/${organizationName}/specs/doc"
+        apiDocsUrl = portalsUrl + "/${portalName}/apidocs"
+        apiDocSnapshotUrlTemplate = portalsUrl + "/${portalName}/apidocs/<api_doc_id>/snapshot"
+    }
 
+    static HttpClient newHttpClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(connectTimeout)
+                .build()
     }
 
     String obtainApigeeAccessToken(String username, String password) {
+        return obtainApigeeToken(username, password).accessToken
+    }
+
+    ApigeeToken obtainApigeeToken(String username, String password) {
+
+        String urlParameters = "username=${encode(username)}&password=${encode(password)}&grant_type=password"
+        def token = requestToken(urlParameters, "Failed to authenticate with Apigee.")
+        LOGGER.info("Authenticated at Apigee successfully. ")
+        return token
+
+    }
+
+    ApigeeToken refreshApigeeToken(String refreshToken) {
 
-        String urlParameters = "username=${username}&password=${password}&grant_type=password"
-        byte[] postData = urlParameters.getBytes(StandardCharsets.UTF_8)
-        HttpURLConnection connection = buildHttpConnection(
+        String urlParameters = "refresh_token=${encode(refreshToken)}&grant_type=refresh_token"
+        def token = requestToken(urlParameters, "Failed to refresh Apigee access token.")
+        LOGGER.info("Refreshed Apigee access token successfully. ")
+        return token
+
+    }
+
+    private ApigeeToken requestToken(String urlParameters, String failureMessage) {
+
+        HttpRequest request = buildHttpRequest(
                 loginUrl,
                 urlParameters,
                 "Basic " + ApigeeConstants.APIGEE_PUBLIC_CREDENTIALS,
                 "application/x-www-form-urlencoded",
                 "POST")
+        HttpResponse<String> response = send(
+                request, PublishMetrics.Phase.LOGIN, "Failed to make an authentication call to Apigee. ")
 
-        try {
-            DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream())
-            outputStream.write(postData)
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make an authentication call to Apigee. " + ex)
-        }
-
-        def responseCode = connection.getResponseCode()
+        def responseCode = response.statusCode()
         if (responseCode == 200) {
-            def responseBody = connection.getInputStream().getText()
-            def accessToken = new JsonSlurper().parseText(responseBody).get("access_token")
-            println "Authenticated at Apigee successfully. "
-            return accessToken
+            return ApigeeToken.fromTokenResponse(new JsonSlurper().parseText(response.body()) as Map)
         } else {
-            throw new RuntimeException("Failed to authenticate with Apigee. Response code ${responseCode} received." +
-                    "${connection.getErrorStream().getText()}")
+            throw new RuntimeException("${failureMessage} Response code ${responseCode} received." +
+                    "${response.body()}")
         }
 
     }
 
-    Map<String, Object> getExistingSpecsFolder(String accessToken) {
-
-        def connection = new URL(specFolderUrl).openConnection()
-        connection.setRequestProperty("Authorization", "Bearer ${accessToken}")
-        def responseCode
+    private static String encode(String value) {
+        return URLEncoder.encode(value ?: "", StandardCharsets.UTF_8.name())
+    }
 
-        try {
-            responseCode = connection.getResponseCode()
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make a call to retrieve existing Open API specs to Apigee. " + ex)
-        }
+    Map<String, Object> getExistingSpecsFolder(String accessToken) {
 
-        if (responseCode == 200) {
-            def responseBody = connection.getInputStream().getText()
-            def specsFolder = new JsonSlurper().parseText(responseBody)
-            println "Found following API specifications:"
-            for (def existingOpenApiSpec : specsFolder.get("contents")) {
-                println "    - ${existingOpenApiSpec.get("name")}"
+        def specsFolder = readListing(specFolderUrl, accessToken, "contents", ["id", "name"],
+                "Failed to make a call to retrieve existing Open API specs to Apigee. ",
+                "Failed to retrieve existing Open API specs from Apigee.")
+        LOGGER.info("Found ${specsFolder.items.size()} API specifications.")
+        if (LOGGER.debugEnabled) {
+            for (def existingOpenApiSpec : specsFolder.items) {
+                LOGGER.debug("    - ${existingOpenApiSpec.get("name")}")
             }
-            return specsFolder as Map<String, Object>
-        } else {
-            throw new RuntimeException("Failed to retrieve existing Open API specs from Apigee." +
-                    "Response code ${responseCode} received. ${connection.getErrorStream().getText()}")
         }
+        return [id: specsFolder.id, contents: specsFolder.items] as Map<String, Object>
 
     }
 
     String publishNewApiSpecDoc(String specName, String folderId, String apigeeAccessToken) {
 
         def body = "{ \"folder\": \"${folderId}\", \"kind\": \"Doc\", \"name\": \"${specName}\"}"
-        byte[] postData = body.getBytes(StandardCharsets.UTF_8)
-        HttpURLConnection connection = buildHttpConnection(
+        HttpRequest request = buildHttpRequest(
                 specDocUrl,
                 body,
                 "Bearer ${apigeeAccessToken}",
                 "application/json",
                 "POST")
+        HttpResponse<String> response = send(
+                request, PublishMetrics.Phase.CREATE_DOC, "Failed to make a call to create a new doc to Apigee. ")
 
-        try {
-            DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream())
-            outputStream.write(postData)
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make a call to create a new doc to Apigee. " + ex)
-        }
-
-        def responseCode = connection.getResponseCode()
+        def responseCode = response.statusCode()
         if (responseCode == 200) {
-            def responseBody = connection.getInputStream().getText()
-            def docId = new JsonSlurper().parseText(responseBody).get("id")
-            println "New doc at Apigee created successfully for ${specName}. "
+            def docId = new JsonSlurper().parseText(response.body()).get("id")
+            LOGGER.lifecycle("New doc at Apigee created successfully for ${specName}. ")
             return docId
         } else {
             throw new RuntimeException("Failed to authenticate with Apigee. Response code ${responseCode} received." +
-                    "${connection.getErrorStream().getText()}")
+                    "${response.body()}")
         }
 
     }
 
-    boolean publishApiSpecContent(String specName, String specContent, String docId, String apigeeAccessToken) {
+    boolean publishApiSpecContent(String specName, File specFile, String docId, String apigeeAccessToken) {
 
         def specContentUrl = specContentUrlTemplate.replace("<id>", docId)
-        def existingSpecContent = getExistingSpecContent(specContentUrl, apigeeAccessToken)
-        if (existingSpecContent == specContent) {
-            println "Spec content unchanged for ${specName}, publishing will not be attempted."
+        def unchanged = semanticComparison
+                ? isExistingSpecContentEquivalent(specContentUrl, apigeeAccessToken, localCanonicalHash(specFile))
+                : isExistingSpecContentEqual(specContentUrl, apigeeAccessToken, specFile)
+        if (unchanged) {
+            LOGGER.info("Spec content unchanged for ${specName}, publishing will not be attempted.")
             return false
         }
 
-        byte[] postData = specContent.getBytes(StandardCharsets.UTF_8)
-        HttpURLConnection connection = buildHttpConnection(
-                specContentUrl,
-                specContent,
-                "Bearer ${apigeeAccessToken}",
-                "text/plain",
-                "PUT")
-
+        File compressedSpecFile = isUploadCompressed() ? gzip(specFile) : null
         try {
-            DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream())
-            outputStream.write(postData)
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make a call to upload spec content to Apigee. " + ex)
+            return uploadSpecContent(specName, specContentUrl,
+                    HttpRequest.BodyPublishers.ofFile(specFile.toPath()),
+                    compressedSpecFile == null ? null : HttpRequest.BodyPublishers.ofFile(compressedSpecFile.toPath()),
+                    apigeeAccessToken)
+        } finally {
+            compressedSpecFile?.delete()
         }
 
-        def responseCode = connection.getResponseCode()
+    }
+
+    /**
+     * Falls back to an uncompressed upload, once per client, if Apigee rejects gzip with 415.
+     */
+    private boolean uploadSpecContent(String specName, String specContentUrl, HttpRequest.BodyPublisher specContent,
+                                      HttpRequest.BodyPublisher compressedSpecContent, String apigeeAccessToken) {
+
+        HttpResponse<String> response = null
+        if (compressedSpecContent != null) {
+            response = sendSpecContent(specContentUrl, compressedSpecContent, "gzip", apigeeAccessToken)
+            if (response.statusCode() == 415) {
+                LOGGER.warn("Compressed spec content rejected by Apigee for ${specName}, uploading it uncompressed.")
+                compressedUploadsRejected = true
+                response = null
+            }
+        }
+        if (response == null) {
+            response = sendSpecContent(specContentUrl, specContent, null, apigeeAccessToken)
+        }
+
+        def responseCode = response.statusCode()
         if (responseCode == 200) {
-            println "Spec content uploaded successfully to Apigee for ${specName}. "
+            LOGGER.lifecycle("Spec content uploaded successfully to Apigee for ${specName}. ")
             return true
         } else {
             throw new RuntimeException("Failed to upload spec content with Apigee." +
-                    "Response code ${responseCode} received. ${connection.getErrorStream().getText()}")
+                    "Response code ${responseCode} received. ${response.body()}")
         }
 
     }
 
-    static String getExistingSpecContent(String specContentUrl, String accessToken) {
+    private HttpResponse<String> sendSpecContent(String specContentUrl, HttpRequest.BodyPublisher specContent,
+                                                 String contentEncoding, String apigeeAccessToken) {
+
+        HttpRequest request = buildHttpRequest(
+                specContentUrl,
+                specContent,
+                "Bearer ${apigeeAccessToken}",
+                "text/plain",
+                "PUT",
+                contentEncoding)
+        return send(request, PublishMetrics.Phase.CONTENT_PUT, "Failed to make a call to upload spec content to Apigee. ")
 
-        def connection = new URL(specContentUrl).openConnection()
-        connection.setRequestProperty("Authorization", "Bearer ${accessToken}")
-        def responseCode
+    }
 
+    private boolean isUploadCompressed() {
+        return compression && compressUploads && !compressedUploadsRejected
+    }
+
+    private static File gzip(File specFile) {
+
+        def compressedSpecFile = File.createTempFile("apigee-spec", ".gz")
         try {
-            responseCode = connection.getResponseCode()
+            specFile.withInputStream { InputStream input ->
+                new GZIPOutputStream(new FileOutputStream(compressedSpecFile), STREAM_BUFFER_SIZE).withCloseable {
+                    input.transferTo(it)
+                }
+            }
         } catch (Exception ex) {
-            throw new RuntimeException("Failed when getting content of existing Open API specs to Apigee. " + ex)
+            compressedSpecFile.delete()
+            throw ex
         }
+        return compressedSpecFile
+
+    }
 
+    /**
+     * @deprecated use {@link #readExistingSpecContent} of a configured client, which shares its HTTP client
+     */
+    @Deprecated
+    static String getExistingSpecContent(String specContentUrl, String accessToken) {
+        return new ApigeeHttpClient(null, null).readExistingSpecContent(specContentUrl, accessToken)
+    }
+
+    String readExistingSpecContent(String specContentUrl, String accessToken) {
+
+        GetResponse response = sendGet(specContentUrl, "Bearer ${accessToken}", PublishMetrics.Phase.CONTENT_GET,
+                "Failed when getting content of existing Open API specs to Apigee. ")
+
+        def responseCode = response.statusCode
+        def responseBody = response.text()
         if (responseCode == 200) {
-            return connection.getInputStream().getText()
+            return responseBody
         } else if (responseCode == 204) {
             return ""
         } else {
             throw new RuntimeException("Failed to retrieve contents of existing Open API specs from Apigee " +
                     "at ${specContentUrl}. Response code ${responseCode} received." +
-                    "${connection.getErrorStream().getText()}")
+                    "${responseBody}")
         }
 
     }
 
-    List<Map<String, Object>> getExistingApiDocs(String apigeeAccessToken) {
-        if (portalName == null) {
-            return Collections.emptyList();
+    boolean isExistingSpecContentEqual(String specContentUrl, String accessToken, File specFile) {
+
+        GetResponse response = sendGet(specContentUrl, "Bearer ${accessToken}", PublishMetrics.Phase.CONTENT_GET,
+                "Failed when getting content of existing Open API specs to Apigee. ")
+
+        return response.body.withCloseable { InputStream existingSpecContent ->
+            def responseCode = response.statusCode
+            if (responseCode == 200) {
+                return specFile.withInputStream { InputStream specContent -> contentEquals(existingSpecContent, specContent) }
+            } else if (responseCode == 204) {
+                return specFile.length() == 0
+            } else {
+                throw new RuntimeException("Failed to retrieve contents of existing Open API specs from Apigee " +
+                        "at ${specContentUrl}. Response code ${responseCode} received." +
+                        "${existingSpecContent.getText(StandardCharsets.UTF_8.name())}")
+            }
         }
 
-        def connection = new URL(apiDocsUrl).openConnection()
-        connection.setRequestProperty("Authorization", "Bearer ${apigeeAccessToken}")
-        def responseCode
+    }
 
-        try {
-            responseCode = connection.getResponseCode()
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make a call to retrieve existing API docs to Apigee. " + ex)
+    boolean isExistingSpecContentEquivalent(String specContentUrl, String accessToken, String canonicalHash) {
+
+        GetResponse response = sendGet(specContentUrl, "Bearer ${accessToken}", PublishMetrics.Phase.CONTENT_GET,
+                "Failed when getting content of existing Open API specs to Apigee. ")
+
+        return response.body.withCloseable { InputStream existingSpecContent ->
+            def responseCode = response.statusCode
+            if (responseCode == 200) {
+                def existingHash = response.version != null ? canonicalHashes?.get(specContentUrl, response.version) : null
+                if (existingHash == null) {
+                    try {
+                        existingHash = SpecCanonicalizer.canonicalHash(
+                                new InputStreamReader(existingSpecContent, StandardCharsets.UTF_8))
+                    } catch (Exception ex) {
+                        LOGGER.info("Could not parse existing spec content at ${specContentUrl}, " +
+                                "treating it as changed: ${ex.message}")
+                        return false
+                    }
+                    if (response.version != null) {
+                        canonicalHashes?.put(specContentUrl, response.version, existingHash)
+                    }
+                }
+                return existingHash == canonicalHash
+            } else if (responseCode == 204) {
+                return false
+            } else {
+                throw new RuntimeException("Failed to retrieve contents of existing Open API specs from Apigee " +
+                        "at ${specContentUrl}. Response code ${responseCode} received." +
+                        "${existingSpecContent.getText(StandardCharsets.UTF_8.name())}")
+            }
         }
 
-        if (responseCode == 200) {
-            def responseBody = connection.getInputStream().getText()
-            def apiDocsResponse = new JsonSlurper().parseText(responseBody)
-            println "Found following API docs:"
-            for (def existingOpenApiSpec : apiDocsResponse.get("data")) {
-                println "    - ${existingOpenApiSpec.get("title")}"
+    }
+
+    private String localCanonicalHash(File specFile) {
+
+        def location = specFile.absolutePath
+        def version = new SpecFile(null, specFile).hash
+        def canonicalHash = canonicalHashes?.get(location, version)
+        if (canonicalHash == null) {
+            canonicalHash = SpecCanonicalizer.canonicalHash(specFile)
+            canonicalHashes?.put(location, version, canonicalHash)
+        }
+        return canonicalHash
+
+    }
+
+    private ListingReader.Listing readListing(String listingUrl, String accessToken, String itemsKey,
+                                              List<String> itemFields, String callFailureMessage, String failureMessage) {
+
+        def listing = new ListingReader.Listing()
+        Set<String> pageTokens = new HashSet<>()
+        String pageUrl = listingUrl
+        while (pageUrl != null) {
+            GetResponse response = sendGet(
+                    pageUrl, "Bearer ${accessToken}", PublishMetrics.Phase.LISTING, callFailureMessage)
+            if (response.statusCode != 200) {
+                throw new RuntimeException("${failureMessage} " +
+                        "Response code ${response.statusCode} received. ${response.text()}")
+            }
+            def page = response.body.withCloseable { InputStream body ->
+                try {
+                    return ListingReader.read(new InputStreamReader(body, StandardCharsets.UTF_8), itemsKey, itemFields)
+                } catch (JsonException ex) {
+                    throw new RuntimeException("${failureMessage} Could not parse response: ${ex.message}", ex)
+                }
+            }
+            listing.id = listing.id ?: page.id
+            listing.items.addAll(page.items)
+            pageUrl = page.nextPageToken != null && pageTokens.add(page.nextPageToken)
+                    ? withPageToken(listingUrl, page.nextPageToken) : null
+        }
+        return listing
+
+    }
+
+    private static String withPageToken(String listingUrl, String pageToken) {
+        return listingUrl + (listingUrl.contains("?") ? "&" : "?") + "pageToken=" + encode(pageToken)
+    }
+
+    static boolean contentEquals(InputStream first, InputStream second) {
+
+        byte[] firstBuffer = new byte[STREAM_BUFFER_SIZE]
+        byte[] secondBuffer = new byte[STREAM_BUFFER_SIZE]
+        while (true) {
+            int firstRead = first.readNBytes(firstBuffer, 0, STREAM_BUFFER_SIZE)
+            int secondRead = second.readNBytes(secondBuffer, 0, STREAM_BUFFER_SIZE)
+            if (firstRead != secondRead
+                    || !Arrays.equals(firstBuffer, 0, firstRead, secondBuffer, 0, secondRead)) {
+                return false
+            }
+            if (firstRead < STREAM_BUFFER_SIZE) {
+                return true
             }
-            return apiDocsResponse.get("data") as List<Map<String, Object>>
-        } else {
-            throw new RuntimeException("Failed to retrieve existing API docs from Apigee." +
-                    "Response code ${responseCode} received. ${connection.getErrorStream().getText()}")
         }
 
     }
 
+    List<Map<String, Object>> getExistingApiDocs(String apigeeAccessToken) {
+        if (portalName == null) {
+            return Collections.emptyList();
+        }
+
+        def apiDocs = readListing(apiDocsUrl, apigeeAccessToken, "data", ["id", "title"],
+                "Failed to make a call to retrieve existing API docs to Apigee. ",
+                "Failed to retrieve existing API docs from Apigee.")
+        LOGGER.info("Found ${apiDocs.items.size()} API docs.")
+        if (LOGGER.debugEnabled) {
+            for (def existingApiDoc : apiDocs.items) {
+                LOGGER.debug("    - ${existingApiDoc.get("title")}")
+            }
+        }
+        return apiDocs.items as List<Map<String, Object>>
+
+    }
+
     def publishApiDocSnapshot(String apiDocId, String apigeeAccessToken) {
 
         String apiDocSnapshotUrl = apiDocSnapshotUrlTemplate.replace("<api_doc_id>", apiDocId)
-        byte[] postData = "".getBytes(StandardCharsets.UTF_8)
-        HttpURLConnection connection = buildHttpConnection(
+        HttpRequest request = buildHttpRequest(
                 apiDocSnapshotUrl,
                 "",
                 "Bearer ${apigeeAccessToken}",
                 "application/json",
                 "PUT")
+        HttpResponse<String> response = send(
+                request, PublishMetrics.Phase.SNAPSHOT, "Failed to make a call to update API doc snapshot to Apigee. ")
 
-        try {
-            DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream())
-            outputStream.write(postData)
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to make a call to update API doc snapshot to Apigee. " + ex)
-        }
-
-        def responseCode = connection.getResponseCode()
+        def responseCode = response.statusCode()
         if (responseCode == 200) {
-            println "API doc snapshot updated successfully at Apigee on ${apiDocSnapshotUrl}. "
+            LOGGER.lifecycle("API doc snapshot updated successfully at Apigee on ${apiDocSnapshotUrl}. ")
         } else {
             throw new RuntimeException("Failed to update API doc snapshot with Apigee." +
-                    "Response code ${responseCode} received.${connection.getErrorStream().getText()}")
+                    "Response code ${responseCode} received.${response.body()}")
         }
 
     }
 
+    /**
+     * @deprecated use {@link #buildHttpRequest}, calls are sent through the {@link HttpClient} of the client
+     */
+    @Deprecated
     static HttpURLConnection buildHttpConnection(
             String urlPath, String body, String authorizationHeader, String contentType, String method) {
 
@@ -254,4 +470,196 @@ class ApigeeHttpClient {
 
     }
 
+    HttpRequest buildHttpRequest(
+            String urlPath, String body, String authorizationHeader, String contentType, String method) {
+        return buildHttpRequest(urlPath, HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8),
+                authorizationHeader, contentType, method)
+    }
+
+    HttpRequest buildHttpRequest(String urlPath, HttpRequest.BodyPublisher body, String authorizationHeader,
+                                 String contentType, String method, String contentEncoding = null) {
+
+        def requestBuilder = newRequestBuilder(urlPath, authorizationHeader, uploadTimeout(body))
+                .header("Content-Type", contentType)
+                .header("charset", "utf-8")
+        if (contentEncoding) {
+            requestBuilder.header("Content-Encoding", contentEncoding)
+        }
+        return requestBuilder.method(method, body).build()
+
+    }
+
+    HttpRequest buildHttpGetRequest(String urlPath, String authorizationHeader) {
+        return newRequestBuilder(urlPath, authorizationHeader).GET().build()
+    }
+
+    private HttpRequest.Builder newRequestBuilder(
+            String urlPath, String authorizationHeader, Duration timeout = readTimeout) {
+
+        URI uri = URI.create(urlPath)
+        // HTTP/2 is negotiated over TLS only, plain HTTP endpoints are called without an h2c upgrade attempt
+        def version = uri.scheme == "https" ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1
+        def requestBuilder = HttpRequest.newBuilder(uri)
+                .version(version)
+                .header("Authorization", authorizationHeader)
+        if (timeout != null) {
+            requestBuilder.timeout(timeout)
+        }
+        return requestBuilder
+
+    }
+
+    /**
+     * The request timeout also covers the upload, so it is extended by the size of the body.
+     */
+    private Duration uploadTimeout(HttpRequest.BodyPublisher body) {
+
+        def contentLength = body.contentLength()
+        if (contentLength < 0) {
+            return null
+        }
+        long uploadSeconds = (contentLength + MIN_UPLOAD_BYTES_PER_SECOND - 1).intdiv(MIN_UPLOAD_BYTES_PER_SECOND)
+        return readTimeout.plusSeconds(uploadSeconds)
+
+    }
+
+    private GetResponse sendGet(
+            String urlPath, String authorizationHeader, PublishMetrics.Phase phase, String failureMessage) {
+
+        def cachedResponse = responseCache?.lookup(urlPath)
+        def requestBuilder = newRequestBuilder(urlPath, authorizationHeader).GET()
+        if (cachedResponse?.etag) {
+            requestBuilder.header("If-None-Match", cachedResponse.etag)
+        }
+        if (cachedResponse?.lastModified) {
+            requestBuilder.header("If-Modified-Since", cachedResponse.lastModified)
+        }
+        if (compression) {
+            requestBuilder.header("Accept-Encoding", "gzip")
+        }
+        HttpResponse<InputStream> response = send(
+                requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream(), phase, failureMessage)
+
+        def statusCode = response.statusCode()
+        if (statusCode == 304 && cachedResponse != null) {
+            response.body().close()
+            return new GetResponse(cachedResponse.statusCode, cachedResponse.openBody(), validators(cachedResponse))
+        }
+        def responseBody = decodedBody(response)
+        if (responseCache != null && (statusCode == 200 || statusCode == 204)) {
+            def etag = response.headers().firstValue("ETag").orElse(null)
+            def lastModified = response.headers().firstValue("Last-Modified").orElse(null)
+            if (etag || lastModified) {
+                def storedResponse = responseCache.store(urlPath, statusCode, etag, lastModified, responseBody)
+                return new GetResponse(statusCode, storedResponse.openBody(), validators(storedResponse))
+            }
+            if (cachedResponse != null) {
+                responseCache.remove(urlPath)
+            }
+        }
+        return new GetResponse(statusCode, responseBody)
+
+    }
+
+    private static String validators(HttpResponseCache.Entry entry) {
+        return "${entry.etag ?: ""}|${entry.lastModified ?: ""}".toString()
+    }
+
+    private static InputStream decodedBody(HttpResponse<InputStream> response) {
+
+        def contentEncoding = response.headers().firstValue("Content-Encoding").orElse("")
+        if (contentEncoding.equalsIgnoreCase("gzip")) {
+            try {
+                def body = new PushbackInputStream(response.body())
+                int firstByte = body.read()
+                if (firstByte == -1) {
+                    return body
+                }
+                body.unread(firstByte)
+                return new GZIPInputStream(body, STREAM_BUFFER_SIZE)
+            } catch (IOException ex) {
+                response.body().close()
+                throw new RuntimeException("Failed to decode gzip response from ${response.uri()}: ${ex.message}", ex)
+            }
+        }
+        return response.body()
+
+    }
+
+    private HttpResponse<String> send(HttpRequest request, PublishMetrics.Phase phase, String failureMessage) {
+        return send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8), phase, failureMessage)
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                     PublishMetrics.Phase phase, String failureMessage) {
+
+        def metric = metrics?.start(phase, request.method(), targetName)
+        def countingBodyHandler = metric == null
+                ? bodyHandler : CountingBodySubscriber.counting(bodyHandler, metric.bytesReceived)
+        def requestBodySize = request.bodyPublisher().map { it.contentLength() }.orElse(0L)
+        int attempt = 0
+        try {
+            while (true) {
+                requestBudget?.acquire()
+                HttpResponse<T> response
+                try {
+                    metric?.bytesSent?.addAndGet(Math.max(0L, requestBodySize))
+                    response = httpClient.send(request, countingBodyHandler)
+                } catch (IOException ex) {
+                    if (!retryPolicy.isRetryable(request.method(), ex, attempt)) {
+                        metric?.fail(attempt)
+                        throw new RuntimeException(failureMessage + ex)
+                    }
+                    waitBeforeRetry(request, retryPolicy.delay(attempt++, null), ex.toString())
+                    continue
+                }
+                if (!retryPolicy.isRetryable(request.method(), response.statusCode(), attempt)) {
+                    metric?.finish(response.statusCode(), attempt)
+                    return response
+                }
+                discardBody(response)
+                def delay = retryPolicy.delay(attempt++, response.headers().firstValue("Retry-After").orElse(null))
+                if (response.statusCode() == 429) {
+                    requestBudget?.backOff(delay)
+                }
+                waitBeforeRetry(request, delay, "Response code ${response.statusCode()} received.")
+            }
+        } catch (InterruptedException ex) {
+            metric?.fail(attempt)
+            Thread.currentThread().interrupt()
+            throw new RuntimeException(failureMessage + ex)
+        }
+
+    }
+
+    private static void waitBeforeRetry(HttpRequest request, Duration delay, String reason) {
+        LOGGER.lifecycle("${request.method()} ${request.uri()} failed (${reason}), retrying in ${delay.toMillis()} ms.")
+        Thread.sleep(delay.toMillis())
+    }
+
+    private static void discardBody(HttpResponse<?> response) {
+        def body = response.body()
+        if (body instanceof Closeable) {
+            body.close()
+        }
+    }
+
+    static class GetResponse {
+
+        int statusCode
+        InputStream body
+        String version
+
+        GetResponse(int statusCode, InputStream body, String version = null) {
+            this.statusCode = statusCode
+            this.body = body
+            this.version = version
+        }
+
+        String text() {
+            return body.withCloseable { it.getText(StandardCharsets.UTF_8.name()) }
+        }
+
+    }
+
 }
@@ -1,13 +1,86 @@
-package io.everon;
+package io.everon
 
-class ApigeePublishExtension {
+import org.gradle.api.Action
+import org.gradle.api.NamedDomainObjectContainer
+import org.gradle.api.model.ObjectFactory
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
 
-    String username
-    String password
-    String portalName
-    String organizationName
-    String[] localSpecFilePaths
+import javax.inject.Inject
+import java.time.Duration
 
-    ApigeePublishExtension() {}
+abstract class ApigeePublishExtension {
+
+    static final int DEFAULT_REQUESTS_PER_SECOND = 10
+
+    final NamedDomainObjectContainer<ApigeeTarget> targets
+
+    abstract Property<String> getUsername()
+
+    abstract Property<String> getPassword()
+
+    abstract Property<String> getPortalName()
+
+    abstract Property<String> getOrganizationName()
+
+    abstract Property<String> getBaseUrl()
+
+    abstract ListProperty<String> getLocalSpecFilePaths()
+
+    abstract ListProperty<String> getReferencedSpecFilePaths()
+
+    abstract Property<Boolean> getBundleExternalRefs()
+
+    abstract Property<Integer> getParallelism()
+
+    abstract Property<Integer> getSnapshotParallelism()
+
+    abstract Property<Boolean> getVerifyRemote()
+
+    abstract Property<Boolean> getCacheToken()
+
+    abstract Property<Boolean> getCacheResponses()
+
+    abstract Property<Boolean> getCompression()
+
+    abstract Property<Boolean> getCompressUploads()
+
+    abstract Property<Boolean> getSemanticComparison()
+
+    abstract Property<Duration> getConnectTimeout()
+
+    abstract Property<Duration> getReadTimeout()
+
+    abstract Property<Integer> getMaxRetries()
+
+    abstract Property<Integer> getRequestsPerSecond()
+
+    abstract Property<Duration> getWatchDebounce()
+
+    abstract Property<Boolean> getWatchSnapshots()
+
+    @Inject
+    ApigeePublishExtension(ObjectFactory objects) {
+        targets = objects.domainObjectContainer(ApigeeTarget)
+        getParallelism().convention(4)
+        getBundleExternalRefs().convention(false)
+        getSnapshotParallelism().convention(2)
+        getVerifyRemote().convention(false)
+        getCacheToken().convention(true)
+        getCacheResponses().convention(true)
+        getCompression().convention(true)
+        getCompressUploads().convention(false)
+        getSemanticComparison().convention(false)
+        getConnectTimeout().convention(ApigeeHttpClient.DEFAULT_CONNECT_TIMEOUT)
+        getReadTimeout().convention(ApigeeHttpClient.DEFAULT_READ_TIMEOUT)
+        getMaxRetries().convention(RetryPolicy.DEFAULT_MAX_RETRIES)
+        getRequestsPerSecond().convention(DEFAULT_REQUESTS_PER_SECOND)
+        getWatchDebounce().convention(Duration.ofMillis(500))
+        getWatchSnapshots().convention(false)
+    }
+
+    void targets(Action<? super NamedDomainObjectContainer<ApigeeTarget>> action) {
+        action.execute(targets)
+    }
 
 }
@@ -2,118 +2,196 @@ package io.everon
 
 import org.gradle.api.Plugin
 import org.gradle.api.Project
-
-import java.util.regex.Matcher
-import java.util.regex.Pattern
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.gradle.api.provider.Provider
 
 class ApigeePublishPlugin implements Plugin<Project> {
 
+    private static final Logger LOGGER = Logging.getLogger(ApigeePublishPlugin)
+
     public static final String TASK_NAME = 'apigeePublish'
+    public static final String WATCH_TASK_NAME = 'apigeeWatch'
+    public static final String MANIFEST_FILE_PATH = 'apigee/publish-manifest.json'
+    public static final String TOKEN_CACHE_DIR_PATH = 'caches/apigee-publish/tokens'
+    public static final String RESPONSE_CACHE_DIR_PATH = 'apigee/http-cache'
+    public static final String BUNDLE_CACHE_DIR_PATH = 'apigee/bundles'
+    public static final String CANONICAL_HASH_CACHE_PATH = 'apigee/canonical-hashes.json'
+    public static final String REPORT_FILE_PATH = 'reports/apigee/publish-report.json'
+    public static final String SESSION_SERVICE_NAME = 'apigeeSession'
+    public static final String MAX_PARALLEL_USAGES_PROPERTY = 'apigee.maxParallelUsages'
 
     void apply(Project project) {
 
         def extension = project.extensions.create('apigee', ApigeePublishExtension)
+        extension.targets.configureEach { ApigeeTarget target ->
+            target.username.convention(systemPropertyOrElse(project, "APIGEE_USERNAME", extension.username))
+            target.password.convention(systemPropertyOrElse(project, "APIGEE_PASSWORD", extension.password))
+        }
 
-        project.tasks.register(TASK_NAME) {
-
-            ApigeeHttpClient client = new ApigeeHttpClient(extension.organizationName, extension.portalName)
+        def sessionService = registerSessionService(project)
 
-            doLast {
-                overwriteExtensionWithSystemProperties(extension)
-                def specFileContents = readFileContents(extension.localSpecFilePaths)
-                def apigeeAccessToken = client.obtainApigeeAccessToken(
-                        extension.username, extension.password)
-                def specsFolder = client.getExistingSpecsFolder(apigeeAccessToken)
-                def folderId = specsFolder.get("id")
-                def existingOpenApiSpecs = specsFolder.get("contents")
-                def existingApiDocs = client.getExistingApiDocs(apigeeAccessToken)
+        project.tasks.register(TASK_NAME, ApigeePublishTask) { task ->
+            task.group = 'publishing'
+            task.description = 'Publishes OpenAPI specs to Apigee.'
+            configurePublishTask(project, extension, sessionService, task)
+        }
+        project.tasks.register(WATCH_TASK_NAME, ApigeeWatchTask) { task ->
+            task.group = 'publishing'
+            task.description = 'Publishes OpenAPI specs to Apigee and republishes them whenever they change.'
+            configurePublishTask(project, extension, sessionService, task)
+            task.debounce.convention(extension.watchDebounce)
+            task.snapshots.convention(extension.watchSnapshots)
+        }
+        addBuildScanValues(project, sessionService)
+    }
 
-                for (String specName : specFileContents.keySet()) {
+    private static void configurePublishTask(Project project, ApigeePublishExtension extension,
+                                             Provider<ApigeeSessionService> sessionService, ApigeePublishTask task) {
+
+        task.localSpecFiles.from(extension.localSpecFilePaths)
+        task.referencedSpecFiles.from(extension.referencedSpecFilePaths)
+        task.bundleExternalRefs.convention(extension.bundleExternalRefs)
+        task.bundleCacheDir.convention(project.layout.buildDirectory.dir(BUNDLE_CACHE_DIR_PATH))
+        task.organizationName.convention(extension.organizationName)
+        task.portalName.convention(extension.portalName)
+        task.baseUrl.convention(systemPropertyOrElse(project, "APIGEE_BASE_URL", extension.baseUrl))
+        task.username.convention(systemPropertyOrElse(project, "APIGEE_USERNAME", extension.username))
+        task.password.convention(systemPropertyOrElse(project, "APIGEE_PASSWORD", extension.password))
+        task.targets.convention(project.provider {
+            extension.targets.collect { ApigeeTarget target -> target.toPublishTarget() }
+        })
+        extension.targets.all { ApigeeTarget target ->
+            task.targetPasswords.put(target.name, target.password.orElse(""))
+        }
+        task.parallelism.convention(extension.parallelism)
+        task.snapshotParallelism.convention(extension.snapshotParallelism)
+        task.connectTimeout.convention(extension.connectTimeout)
+        task.readTimeout.convention(extension.readTimeout)
+        task.maxRetries.convention(extension.maxRetries)
+        task.requestsPerSecond.convention(extension.requestsPerSecond)
+        task.verifyRemote.convention(project.providers.systemProperty("APIGEE_VERIFY_REMOTE")
+                .map { Boolean.parseBoolean(it) }
+                .orElse(extension.verifyRemote))
+        task.manifestFile.convention(project.layout.buildDirectory.file(MANIFEST_FILE_PATH))
+        task.cacheToken.convention(extension.cacheToken)
+        task.tokenCacheDir.convention(project.objects.directoryProperty()
+                .fileValue(new File(project.gradle.gradleUserHomeDir, TOKEN_CACHE_DIR_PATH)))
+        task.cacheResponses.convention(extension.cacheResponses)
+        task.responseCacheDir.convention(project.layout.buildDirectory.dir(RESPONSE_CACHE_DIR_PATH))
+        task.compression.convention(extension.compression)
+        task.compressUploads.convention(extension.compressUploads)
+        task.semanticComparison.convention(extension.semanticComparison)
+        task.canonicalHashCacheFile.convention(project.layout.buildDirectory.file(CANONICAL_HASH_CACHE_PATH))
+        task.reportFile.convention(project.layout.buildDirectory.file(REPORT_FILE_PATH))
+        task.markerFile.convention(project.layout.buildDirectory.file("apigee/${task.name}.marker"))
+        task.sessionService.convention(sessionService)
+        task.usesService(sessionService)
 
-                    def specPublished = publishSpec(client, existingOpenApiSpecs, specName, apigeeAccessToken, specFileContents, folderId as String)
+    }
 
-                    if (!specPublished || !extension.portalName?.trim()) {
-                        continue
-                    }
+    private static Provider<ApigeeSessionService> registerSessionService(Project project) {
 
-                    publishDoc(client, existingApiDocs, apigeeAccessToken, specName)
-                }
+        return project.gradle.sharedServices.registerIfAbsent(SESSION_SERVICE_NAME, ApigeeSessionService) { spec ->
+            def maxParallelUsages = project.findProperty(MAX_PARALLEL_USAGES_PROPERTY)
+            if (maxParallelUsages != null) {
+                spec.maxParallelUsages.set((maxParallelUsages as String).toInteger())
             }
         }
+
     }
 
-    static def publishSpec(ApigeeHttpClient client, Object existingOpenApiSpecs, String specName, String apigeeAccessToken, Map specFileContents, String folderId) {
-        def docId
+    private static void addBuildScanValues(Project project, Provider<ApigeeSessionService> sessionService) {
 
-        if (existingOpenApiSpecs.stream().noneMatch { existingOpenApiSpec -> existingOpenApiSpec.get("name") == specName }) {
-            docId = client.publishNewApiSpecDoc(specName, folderId, apigeeAccessToken)
-        } else {
-            docId = existingOpenApiSpecs.stream()
-                    .filter { existingOpenApiSpec -> existingOpenApiSpec.get("name") == specName }
-                    .findFirst()
-                    .orElseThrow().get("id") as String
+        def buildScan = project.rootProject.extensions.findByName('buildScan')
+        if (buildScan == null) {
+            return
+        }
+        def taskPath = project.path == Project.PATH_SEPARATOR ? ":${TASK_NAME}" : "${project.path}:${TASK_NAME}"
+        buildScan.buildFinished {
+            def totals = sessionService.get().reportTotals(taskPath)
+            if (totals == null) {
+                return
+            }
+            buildScan.value("Apigee requests (${taskPath})", totals.requests as String)
+            buildScan.value("Apigee failed requests (${taskPath})", totals.failed as String)
+            buildScan.value("Apigee retries (${taskPath})", totals.retries as String)
+            buildScan.value("Apigee bytes sent (${taskPath})", totals.bytesSent as String)
+            buildScan.value("Apigee bytes received (${taskPath})", totals.bytesReceived as String)
+            buildScan.value("Apigee p99 latency (${taskPath}, ms)", totals.p99Millis as String)
         }
 
-        return client.publishApiSpecContent(specName, specFileContents.get(specName) as String, docId, apigeeAccessToken)
     }
 
-    static def publishDoc(ApigeeHttpClient client, List existingApiDocs, String apigeeAccessToken, String specName) {
-        if (existingApiDocs.stream().noneMatch { existingApiDoc -> existingApiDoc.get("title") == specName }) {
-            println "No api docs found for ${specName}," +
-                    "API doc snapshot republishing will not be attempted."
-            println "    - To have your spec published automatically create API product for ${specName}," +
-                    "and publish it in API catalog of Everon API documentation portal (as described here " +
-                    "https://docs.everon.dev/#/architecture/docs/apigee/apigee_developer_portal)."
-        } else {
-            def existingApiDoc = existingApiDocs.stream()
-                    .filter { existingApiDoc -> existingApiDoc.get("title") == specName }
-                    .findFirst()
-                    .orElseThrow()
-            client.publishApiDocSnapshot(Integer.toString(existingApiDoc.get("id") as int), apigeeAccessToken)
+    static def publishSpec(ApigeeHttpClient client, RemoteCatalog catalog, String specName, String apigeeAccessToken,
+                           Map<String, SpecFile> specFiles, PublishManifest manifest = null, boolean verifyRemote = false,
+                           ApigeeSessionService session = null) {
+        def docId = session != null
+                ? session.obtainSpecDocId(client, catalog, specName, apigeeAccessToken)
+                : obtainSpecDocId(client, catalog, specName, apigeeAccessToken)
+
+        def specFile = specFiles.get(specName)
+        def contentHash = manifest == null ? null : specFile.hash
+        if (manifest != null && !verifyRemote && manifest.isUpToDate(client.organizationName, docId, contentHash)) {
+            LOGGER.info("Spec content unchanged for ${specName} since last publish, remote comparison skipped.")
+            return false
+        }
 
+        def specPublished = client.publishApiSpecContent(specName, specFile.file, docId, apigeeAccessToken)
+        manifest?.record(client.organizationName, docId, contentHash)
+        return specPublished
+    }
+
+    static String obtainSpecDocId(ApigeeHttpClient client, RemoteCatalog catalog, String specName, String apigeeAccessToken) {
+        def existingSpec = catalog.findSpec(specName)
+        if (existingSpec != null) {
+            return existingSpec.id
         }
+        def docId = client.publishNewApiSpecDoc(specName, catalog.folderId, apigeeAccessToken)
+        catalog.addSpec(new RemoteSpec(id: docId, name: specName))
+        return docId
     }
 
-    static def readFileContents(String[] localFilePaths) {
+    static String findApiDocId(RemoteCatalog catalog, String specName) {
+        def existingApiDoc = catalog.findApiDoc(specName)
+        if (existingApiDoc == null) {
+            LOGGER.warn("No api docs found for ${specName}," +
+                    "API doc snapshot republishing will not be attempted.")
+            LOGGER.warn("    - To have your spec published automatically create API product for ${specName}," +
+                    "and publish it in API catalog of Everon API documentation portal (as described here " +
+                    "https://docs.everon.dev/#/architecture/docs/apigee/apigee_developer_portal).")
+            return null
+        }
+        return existingApiDoc.id
+    }
+
+    static Map<String, SpecFile> readSpecFiles(String[] localFilePaths, SpecBundler bundler = null) {
 
-        def fileContents = [:]
+        def specFiles = new LinkedHashMap<String, SpecFile>()
         for (String localFilePath : localFilePaths) {
-            File file = new File(localFilePath)
-            String fileContent = file.text
-            fileContents[findSpecTitle(fileContent)] = fileContent
+            def specFile = readSpecFile(new File(localFilePath), bundler)
+            specFiles[specFile.title] = specFile
         }
-        println "Successfully loaded API definitions ${fileContents.keySet()}."
-        return fileContents
+        LOGGER.lifecycle("Successfully loaded API definitions ${specFiles.keySet()}.")
+        return specFiles
 
     }
 
-    static String findSpecTitle(String openApiYaml) {
+    static SpecFile readSpecFile(File file, SpecBundler bundler = null) {
+        File content = bundler != null ? bundler.bundle(file) : file
+        return new SpecFile(findSpecTitle(content), content, file)
+    }
 
-        Pattern pattern = Pattern.compile("title:(.*?)\n", Pattern.DOTALL)
-        Matcher matcher = pattern.matcher(openApiYaml)
-        while (matcher.find()) {
-            return matcher.group(1).replace("\"", "").trim()
-        }
-        throw new RuntimeException("Could not find title field in spec content: ${openApiYaml}")
+    static String findSpecTitle(File specFile) {
+        return SpecMetadataReader.read(specFile).title
     }
 
-    static void overwriteExtensionWithSystemProperties(ApigeePublishExtension extension) {
-        for (Map.Entry<Object, Object> entry : System.getProperties().entrySet()) {
-            String key = entry.getKey().toString()
-            if (key.contains("APIGEE_")) {
-                switch (key) {
-                    case "APIGEE_USERNAME":
-                        extension.username = entry.getValue().toString()
-                        break
-                    case "APIGEE_PASSWORD":
-                        extension.password = entry.getValue().toString()
-                        break
-                    default:
-                        break
-                }
-            }
-        }
+    static String findSpecTitle(String openApiYaml) {
+        return SpecMetadataReader.read(openApiYaml).title
     }
 
+    static Provider<String> systemPropertyOrElse(Project project, String name, Provider<String> defaultValue) {
+        return project.providers.systemProperty(name).orElse(defaultValue)
+    }
 
 }
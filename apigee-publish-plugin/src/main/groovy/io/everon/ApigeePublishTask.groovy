@@ -0,0 +1,281 @@
+package io.everon
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.options.Option
+
+import java.time.Duration
+
+/**
+ * Publishes local OpenAPI specs to one or more Apigee targets. Not cacheable, as publishing is a side effect.
+ */
+abstract class ApigeePublishTask extends DefaultTask {
+
+    private SpecBundler specBundler
+
+    ApigeePublishTask() {
+        outputs.upToDateWhen { !verifyRemote.getOrElse(false) && !hasPendingSnapshots() }
+        bundledSpecFiles.from { bundleInputs() }
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getLocalSpecFiles()
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getReferencedSpecFiles()
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    abstract ConfigurableFileCollection getBundledSpecFiles()
+
+    @Input
+    abstract Property<Boolean> getBundleExternalRefs()
+
+    @Internal
+    abstract DirectoryProperty getBundleCacheDir()
+
+    @Input
+    @Optional
+    abstract Property<String> getOrganizationName()
+
+    @Input
+    @Optional
+    abstract Property<String> getPortalName()
+
+    @Input
+    @Optional
+    abstract Property<String> getUsername()
+
+    @Internal
+    abstract Property<String> getPassword()
+
+    @Input
+    @Optional
+    abstract Property<String> getBaseUrl()
+
+    @Internal
+    abstract Property<Integer> getParallelism()
+
+    @Internal
+    abstract Property<Integer> getSnapshotParallelism()
+
+    @Input
+    @Option(option = "verify-remote", description = "Compares spec content with Apigee even if unchanged since last publish.")
+    abstract Property<Boolean> getVerifyRemote()
+
+    @Internal
+    abstract Property<Duration> getConnectTimeout()
+
+    @Internal
+    abstract Property<Duration> getReadTimeout()
+
+    @Internal
+    abstract Property<Integer> getMaxRetries()
+
+    @Internal
+    abstract Property<Integer> getRequestsPerSecond()
+
+    @Internal
+    abstract RegularFileProperty getManifestFile()
+
+    @Internal
+    abstract Property<Boolean> getCacheToken()
+
+    @Internal
+    abstract DirectoryProperty getTokenCacheDir()
+
+    @Internal
+    abstract Property<Boolean> getCacheResponses()
+
+    @Internal
+    abstract DirectoryProperty getResponseCacheDir()
+
+    @Internal
+    abstract Property<Boolean> getCompression()
+
+    @Internal
+    abstract Property<Boolean> getCompressUploads()
+
+    @Internal
+    abstract Property<Boolean> getSemanticComparison()
+
+    @Internal
+    abstract RegularFileProperty getCanonicalHashCacheFile()
+
+    @Internal
+    abstract RegularFileProperty getReportFile()
+
+    @Internal
+    abstract ListProperty<PublishTarget> getTargets()
+
+    @Internal
+    abstract MapProperty<String, String> getTargetPasswords()
+
+    @Internal
+    abstract Property<ApigeeSessionService> getSessionService()
+
+    @OutputFile
+    abstract RegularFileProperty getMarkerFile()
+
+    @Internal
+    List<PublishTarget> getPublishTargets() {
+        def configuredTargets = targets.getOrElse([])
+        if (!configuredTargets.isEmpty()) {
+            def passwords = targetPasswords.getOrElse([:])
+            return configuredTargets.collect { PublishTarget target ->
+                new PublishTarget(target.name, target.organizationName, target.portalName, target.username,
+                        passwords.get(target.name) ?: null)
+            }
+        }
+        if (!organizationName.present) {
+            throw new RuntimeException("No Apigee organizationName or targets configured.")
+        }
+        return [new PublishTarget(PublishTarget.DEFAULT_NAME, organizationName.get(), portalName.getOrNull(),
+                username.getOrNull(), password.getOrNull())]
+    }
+
+    @Input
+    List<String> getTargetKeys() {
+        return publishTargets.collect { "${it.name}=${it.organizationName}/${it.portalName ?: ""}/${it.username}".toString() }
+    }
+
+    @TaskAction
+    void publish() {
+
+        def specFiles = ApigeePublishPlugin.readSpecFiles(localSpecFiles.files.collect { it.path } as String[], bundler)
+        def manifest = PublishManifest.load(manifestFile.get().asFile)
+        ApigeeTargetPublisher.reportResults(publishToTargets(specFiles, manifest, true))
+
+        writeMarker(specFiles)
+
+    }
+
+    protected boolean hasPendingSnapshots() {
+        return !PublishManifest.load(manifestFile.get().asFile).snapshotsPending.isEmpty()
+    }
+
+    protected Set<File> bundleInputs() {
+        if (!bundleExternalRefs.getOrElse(false)) {
+            return [] as Set<File>
+        }
+        def bundleCache = new SpecBundler(bundleCacheDir.get().asFile)
+        return localSpecFiles.files.collectMany { bundleCache.recordedInputs(it) } as Set<File>
+    }
+
+    @Internal
+    protected SpecBundler getBundler() {
+        if (!bundleExternalRefs.get()) {
+            return null
+        }
+        if (specBundler == null) {
+            specBundler = new SpecBundler(bundleCacheDir.get().asFile)
+        }
+        return specBundler
+    }
+
+    protected List<TargetResult> publishToTargets(Map<String, SpecFile> specFiles, PublishManifest manifest,
+                                                  boolean snapshots) {
+
+        def startNanos = System.nanoTime()
+        def metrics = new PublishMetrics()
+        def canonicalHashes = semanticComparison.get() ? CanonicalHashCache.load(canonicalHashCacheFile.get().asFile) : null
+        def tokenCache = cacheToken.get() ? new ApigeeTokenCache(tokenCacheDir.get().asFile) : null
+        def session = sessionService.getOrNull()
+        def publishers = publishTargets.collect { PublishTarget target ->
+            def client = createClient(target, metrics, session)
+            client.canonicalHashes = canonicalHashes
+            def publisher = new ApigeeTargetPublisher(target, client)
+            publisher.tokenCache = tokenCache
+            publisher.session = session
+            publisher.manifest = manifest
+            publisher.parallelism = parallelism.get()
+            publisher.snapshotParallelism = snapshotParallelism.get()
+            publisher.verifyRemote = verifyRemote.get()
+            publisher.snapshots = snapshots
+            return publisher
+        }
+
+        List<TargetResult> results = []
+        try {
+            results = ApigeeTargetPublisher.publishAll(publishers, specFiles)
+        } finally {
+            manifest.save()
+            canonicalHashes?.save()
+            writeReport(metrics, results, Duration.ofNanos(System.nanoTime() - startNanos))
+        }
+        return results
+
+    }
+
+    protected ApigeeHttpClient createClient(PublishTarget target, PublishMetrics metrics, ApigeeSessionService session) {
+
+        def client = session != null
+                ? new ApigeeHttpClient(target.organizationName, target.portalName,
+                session.httpClient(connectTimeout.get()), readTimeout.get())
+                : new ApigeeHttpClient(target.organizationName, target.portalName, connectTimeout.get(), readTimeout.get())
+        if (baseUrl.present) {
+            client.useBaseUrl(baseUrl.get())
+        }
+        client.retryPolicy = new RetryPolicy(
+                maxRetries.get(), RetryPolicy.DEFAULT_INITIAL_BACKOFF, RetryPolicy.DEFAULT_MAX_BACKOFF)
+        if (requestsPerSecond.get() > 0) {
+            client.requestBudget = session != null
+                    ? session.requestBudget(target.organizationName, requestsPerSecond.get())
+                    : new RequestBudget(requestsPerSecond.get())
+        }
+        client.responseCache = cacheResponses.get()
+                ? new HttpResponseCache(responseCacheDir.get().asFile, "${client.loginUrl}|${target.username}".toString())
+                : null
+        client.compression = compression.get()
+        client.compressUploads = compressUploads.get()
+        client.semanticComparison = semanticComparison.get()
+        client.metrics = metrics
+        client.targetName = target.name
+        return client
+
+    }
+
+    private void writeReport(PublishMetrics metrics, List<TargetResult> results, Duration duration) {
+
+        def report = reportFile.get().asFile
+        def written = metrics.writeReport(report, results, duration)
+        def phases = written.phases as Map<String, Map<String, Object>>
+        phases.each { phase, statistics ->
+            logger.info("${phase}: ${statistics.requests} requests, p50 ${statistics.p50Millis} ms, " +
+                    "p99 ${statistics.p99Millis} ms, ${statistics.bytesReceived} bytes received, " +
+                    "${statistics.bytesSent} bytes sent, ${statistics.retries} retries")
+        }
+        logger.info("Apigee publish report written to ${report}.")
+        sessionService.getOrNull()?.recordReportTotals(path, written.totals as Map)
+
+    }
+
+    private void writeMarker(Map<String, SpecFile> specFiles) {
+
+        def marker = markerFile.get().asFile
+        marker.parentFile.mkdirs()
+        marker.withWriter("UTF-8") { writer ->
+            publishTargets.each { target ->
+                writer.writeLine("${target.name}=${target.organizationName}/${target.portalName ?: ""}")
+            }
+            specFiles.each { specName, specFile -> writer.writeLine("${specName}=${specFile.hash}") }
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.everon
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+
+import java.net.http.HttpClient
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Apigee connections, tokens, request budgets and catalogs shared by all publish tasks of a build.
+ */
+abstract class ApigeeSessionService implements BuildService<BuildServiceParameters.None> {
+
+    private static final Logger LOGGER = Logging.getLogger(ApigeeSessionService)
+
+    private final Map<Duration, HttpClient> httpClients = new ConcurrentHashMap<>()
+    private final Map<String, RequestBudget> requestBudgets = new ConcurrentHashMap<>()
+    private final Map<String, ApigeeToken> tokens = new ConcurrentHashMap<>()
+    private final Map<String, RemoteCatalog> catalogs = new ConcurrentHashMap<>()
+    private final Map<String, Object> locks = new ConcurrentHashMap<>()
+    private final Map<String, Map> reportTotals = new ConcurrentHashMap<>()
+    private final Map<String, String> specDocIds = new ConcurrentHashMap<>()
+
+    HttpClient httpClient(Duration connectTimeout) {
+        return httpClients.computeIfAbsent(connectTimeout, { ApigeeHttpClient.newHttpClient(connectTimeout) })
+    }
+
+    RequestBudget requestBudget(String organizationName, int requestsPerSecond) {
+        return requestBudgets.computeIfAbsent(organizationName, { new RequestBudget(requestsPerSecond) })
+    }
+
+    String obtainAccessToken(ApigeeHttpClient client, String username, String password, ApigeeTokenCache tokenCache) {
+
+        def key = "${client.loginUrl}|${username}|${CacheFiles.sha256(password ?: "")}".toString()
+        synchronized (lock("token|${key}")) {
+            def token = tokens.get(key)
+            if (token?.isValidFor(ApigeeTokenCache.EXPIRY_MARGIN_MILLIS)) {
+                LOGGER.info("Reusing Apigee access token of this build.")
+                return token.accessToken
+            }
+            token = tokenCache != null
+                    ? tokenCache.obtainToken(client, username, password)
+                    : client.obtainApigeeToken(username, password)
+            tokens.put(key, token)
+            return token.accessToken
+        }
+
+    }
+
+    RemoteCatalog catalog(ApigeeHttpClient client, String apigeeAccessToken) {
+
+        def key = "${client.specFolderUrl}|${client.apiDocsUrl}".toString()
+        synchronized (lock("catalog|${key}")) {
+            def catalog = catalogs.get(key)
+            if (catalog == null) {
+                catalog = RemoteCatalog.from(
+                        client.getExistingSpecsFolder(apigeeAccessToken), client.getExistingApiDocs(apigeeAccessToken))
+                catalogs.put(key, catalog)
+            } else {
+                LOGGER.info("Reusing Apigee specs folder and API docs listed earlier in this build.")
+            }
+            return catalog
+        }
+
+    }
+
+    /**
+     * Creates the spec doc unless the catalog or another task has. Serialized per organization and spec name.
+     */
+    String obtainSpecDocId(ApigeeHttpClient client, RemoteCatalog catalog, String specName, String apigeeAccessToken) {
+
+        def key = "${client.organizationName}|${specName}".toString()
+        synchronized (lock("spec|${key}")) {
+            def existingSpec = catalog.findSpec(specName)
+            if (existingSpec != null) {
+                return existingSpec.id
+            }
+            def docId = specDocIds.get(key)
+            if (docId != null) {
+                catalog.addSpec(new RemoteSpec(id: docId, name: specName))
+                return docId
+            }
+            docId = ApigeePublishPlugin.obtainSpecDocId(client, catalog, specName, apigeeAccessToken)
+            specDocIds.put(key, docId)
+            return docId
+        }
+
+    }
+
+    void recordReportTotals(String taskPath, Map totals) {
+        reportTotals.put(taskPath, totals)
+    }
+
+    Map reportTotals(String taskPath) {
+        return reportTotals.get(taskPath)
+    }
+
+    private Object lock(String key) {
+        return locks.computeIfAbsent(key, { new Object() })
+    }
+
+}
@@ -0,0 +1,177 @@
+package io.everon
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Publishes a set of specs concurrently, then the snapshots of their api docs.
+ */
+class ApigeeSpecPublisher {
+
+    private static final Logger LOGGER = Logging.getLogger(ApigeeSpecPublisher)
+
+    ApigeeHttpClient client
+    int parallelism
+    int snapshotParallelism = 1
+    boolean snapshots = true
+    PublishManifest manifest
+    boolean verifyRemote
+    ApigeeSessionService session
+
+    ApigeeSpecPublisher(ApigeeHttpClient client, int parallelism) {
+        this.client = client
+        this.parallelism = parallelism
+    }
+
+    List<PublishResult> publish(Map<String, SpecFile> specFiles, RemoteCatalog catalog, String apigeeAccessToken) {
+        return publishSnapshots(upload(specFiles, catalog, apigeeAccessToken), catalog, apigeeAccessToken)
+    }
+
+    List<PublishResult> upload(Map<String, SpecFile> specFiles, RemoteCatalog catalog, String apigeeAccessToken) {
+
+        if (specFiles.isEmpty()) {
+            return Collections.emptyList()
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, specFiles.size())))
+        try {
+            List<Callable<PublishResult>> tasks = specFiles.keySet().collect { specName ->
+                Callable<PublishResult> task = {
+                    def metrics = client.metrics
+                    if (metrics == null) {
+                        return publishOne(specName as String, specFiles, catalog, apigeeAccessToken)
+                    }
+                    return metrics.forSpec(specName as String) {
+                        publishOne(specName as String, specFiles, catalog, apigeeAccessToken)
+                    }
+                }
+                return task
+            }
+            return executor.invokeAll(tasks).collect { Future<PublishResult> future -> future.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+
+    }
+
+    /**
+     * Specs whose snapshot fails, including pending ones, are reported as failed and stay pending.
+     */
+    List<PublishResult> publishSnapshots(List<PublishResult> results, RemoteCatalog catalog, String apigeeAccessToken) {
+
+        if (!client.portalName?.trim()) {
+            return results
+        }
+        if (!snapshots) {
+            deferSnapshots(results)
+            return results
+        }
+
+        Set<String> specNames = new LinkedHashSet<>(
+                results.findAll { it.status == PublishResult.Status.PUBLISHED }*.specName)
+        if (manifest != null) {
+            specNames.addAll(manifest.pendingSnapshotSpecs(client.organizationName, client.portalName))
+        }
+        Map<String, List<String>> specNamesByApiDocId = new LinkedHashMap<>()
+        for (String specName : specNames) {
+            def apiDocId = ApigeePublishPlugin.findApiDocId(catalog, specName)
+            if (apiDocId != null) {
+                specNamesByApiDocId.computeIfAbsent(apiDocId, { new ArrayList<String>() }).add(specName)
+            } else {
+                manifest?.removePendingSnapshots(client.organizationName, client.portalName, [specName])
+            }
+        }
+        if (specNamesByApiDocId.isEmpty()) {
+            return results
+        }
+        manifest?.addPendingSnapshots(client.organizationName, client.portalName, specNamesByApiDocId.values().flatten())
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(snapshotParallelism, specNamesByApiDocId.size())))
+        try {
+            List<Callable<Exception>> tasks = specNamesByApiDocId.keySet().collect { String apiDocId ->
+                Callable<Exception> task = {
+                    try {
+                        client.publishApiDocSnapshot(apiDocId, apigeeAccessToken)
+                        return null
+                    } catch (Exception ex) {
+                        LOGGER.error("Publishing of API doc ${apiDocId} snapshot failed: ${ex.message}")
+                        return ex
+                    }
+                }
+                return task
+            }
+            def failures = [:]
+            [specNamesByApiDocId.values() as List, executor.invokeAll(tasks)].transpose().each { apiDocSpecNames, future ->
+                def failure = (future as Future<Exception>).get()
+                if (failure != null) {
+                    (apiDocSpecNames as List<String>).each { failures.put(it, failure) }
+                } else {
+                    manifest?.removePendingSnapshots(
+                            client.organizationName, client.portalName, apiDocSpecNames as List<String>)
+                }
+            }
+            def reported = results.collect { PublishResult result ->
+                failures.containsKey(result.specName)
+                        ? PublishResult.failed(result.specName, failures.remove(result.specName) as Exception)
+                        : result
+            }
+            failures.each { specName, failure -> reported.add(PublishResult.failed(specName as String, failure as Exception)) }
+            return reported
+        } finally {
+            executor.shutdownNow()
+        }
+
+    }
+
+    void deferSnapshots(List<PublishResult> results) {
+        if (client.portalName?.trim()) {
+            manifest?.addPendingSnapshots(client.organizationName, client.portalName,
+                    results.findAll { it.status == PublishResult.Status.PUBLISHED }*.specName)
+        }
+    }
+
+    private PublishResult publishOne(
+            String specName, Map<String, SpecFile> specFiles, RemoteCatalog catalog, String apigeeAccessToken) {
+
+        try {
+            def specPublished = ApigeePublishPlugin.publishSpec(
+                    client, catalog, specName, apigeeAccessToken, specFiles, manifest, verifyRemote, session)
+            if (!specPublished) {
+                return PublishResult.unchanged(specName)
+            }
+            return PublishResult.published(specName)
+        } catch (Exception ex) {
+            LOGGER.error("Publishing of ${specName} failed: ${ex.message}")
+            return PublishResult.failed(specName, ex)
+        }
+
+    }
+
+    static void reportResults(List<PublishResult> results) {
+
+        LOGGER.lifecycle("Publishing summary:")
+        logResults(results)
+
+        def failedResults = results.findAll { it.failed }
+        if (!failedResults.isEmpty()) {
+            def exception = new RuntimeException("Failed to publish ${failedResults.size()} of ${results.size()} " +
+                    "API specs: ${failedResults*.specName}")
+            failedResults.each { exception.addSuppressed(it.failure) }
+            throw exception
+        }
+
+    }
+
+    static void logResults(List<PublishResult> results) {
+        for (PublishResult result : results) {
+            LOGGER.lifecycle("    - ${result.specName}: ${result.status}" + (result.failed ? " (${result.failure.message})" : ""))
+        }
+    }
+
+}
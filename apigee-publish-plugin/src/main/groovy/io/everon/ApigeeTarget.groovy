@@ -0,0 +1,43 @@
+package io.everon
+
+import org.gradle.api.Named
+import org.gradle.api.provider.Property
+
+import javax.inject.Inject
+
+/**
+ * An Apigee organization, and optionally a portal, that specs are published to.
+ */
+abstract class ApigeeTarget implements Named {
+
+    private final String name
+
+    @Inject
+    ApigeeTarget(String name) {
+        this.name = name
+    }
+
+    @Override
+    String getName() {
+        return name
+    }
+
+    abstract Property<String> getOrganizationName()
+
+    abstract Property<String> getPortalName()
+
+    abstract Property<String> getUsername()
+
+    abstract Property<String> getPassword()
+
+    /**
+     * Leaves out the password, which the publish task keeps as a provider.
+     */
+    PublishTarget toPublishTarget() {
+        if (!organizationName.present) {
+            throw new RuntimeException("No organizationName configured for Apigee target '${name}'.")
+        }
+        return new PublishTarget(name, organizationName.get(), portalName.getOrNull(), username.getOrNull(), null)
+    }
+
+}
@@ -0,0 +1,164 @@
+package io.everon
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Publishes the specs to one target. Targets of one organization share a single upload of the content.
+ */
+class ApigeeTargetPublisher {
+
+    private static final Logger LOGGER = Logging.getLogger(ApigeeTargetPublisher)
+
+    PublishTarget target
+    ApigeeHttpClient client
+    ApigeeTokenCache tokenCache
+    ApigeeSessionService session
+    PublishManifest manifest
+    int parallelism
+    int snapshotParallelism = 1
+    boolean verifyRemote
+    boolean snapshots = true
+    private String accessToken
+    private RemoteCatalog catalog
+
+    ApigeeTargetPublisher(PublishTarget target, ApigeeHttpClient client) {
+        this.target = target
+        this.client = client
+    }
+
+    TargetResult publish(Map<String, SpecFile> specFiles) {
+        return publishOrganization([this], specFiles).first()
+    }
+
+    static List<TargetResult> publishOrganization(List<ApigeeTargetPublisher> publishers, Map<String, SpecFile> specFiles) {
+
+        List<PublishResult> uploadResults
+        try {
+            uploadResults = publishers.first().upload(specFiles)
+        } catch (Exception ex) {
+            LOGGER.error("Publishing to ${publishers*.target.join(", ")} failed: ${ex.message}")
+            return publishers.collect { ApigeeTargetPublisher publisher -> TargetResult.failed(publisher.target, ex) }
+        }
+        return publishers.collect { ApigeeTargetPublisher publisher -> publisher.publishSnapshots(uploadResults) }
+
+    }
+
+    private List<PublishResult> upload(Map<String, SpecFile> specFiles) {
+        def apigeeAccessToken = obtainAccessToken()
+        return specPublisher().upload(specFiles, obtainCatalog(apigeeAccessToken), apigeeAccessToken)
+    }
+
+    private TargetResult publishSnapshots(List<PublishResult> uploadResults) {
+
+        if (!target.portalName?.trim()) {
+            return TargetResult.completed(target, uploadResults)
+        }
+        if (!snapshots) {
+            specPublisher().deferSnapshots(uploadResults)
+            return TargetResult.completed(target, uploadResults)
+        }
+        try {
+            def apigeeAccessToken = obtainAccessToken()
+            return TargetResult.completed(target, specPublisher().publishSnapshots(
+                    uploadResults, obtainCatalog(apigeeAccessToken), apigeeAccessToken))
+        } catch (Exception ex) {
+            LOGGER.error("Publishing to ${target} failed: ${ex.message}")
+            return TargetResult.failed(target, ex)
+        }
+
+    }
+
+    private ApigeeSpecPublisher specPublisher() {
+        def publisher = new ApigeeSpecPublisher(client, parallelism)
+        publisher.manifest = manifest
+        publisher.verifyRemote = verifyRemote
+        publisher.snapshotParallelism = snapshotParallelism
+        publisher.snapshots = snapshots
+        publisher.session = session
+        return publisher
+    }
+
+    private RemoteCatalog obtainCatalog(String apigeeAccessToken) {
+        if (catalog == null) {
+            catalog = session != null
+                    ? session.catalog(client, apigeeAccessToken)
+                    : RemoteCatalog.from(
+                    client.getExistingSpecsFolder(apigeeAccessToken), client.getExistingApiDocs(apigeeAccessToken))
+        }
+        return catalog
+    }
+
+    private String obtainAccessToken() {
+        if (accessToken == null) {
+            accessToken = requestAccessToken()
+        }
+        return accessToken
+    }
+
+    private String requestAccessToken() {
+
+        if (session != null) {
+            return session.obtainAccessToken(client, target.username, target.password, tokenCache)
+        }
+        return tokenCache != null
+                ? tokenCache.obtainAccessToken(client, target.username, target.password)
+                : client.obtainApigeeAccessToken(target.username, target.password)
+
+    }
+
+    static List<TargetResult> publishAll(List<ApigeeTargetPublisher> publishers, Map<String, SpecFile> specFiles) {
+
+        def organizations = publishers.groupBy { it.target.organizationName }.values() as List<List<ApigeeTargetPublisher>>
+        if (organizations.size() == 1) {
+            return publishOrganization(organizations.first(), specFiles)
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(organizations.size())
+        try {
+            List<Callable<List<TargetResult>>> tasks = organizations.collect { List<ApigeeTargetPublisher> group ->
+                Callable<List<TargetResult>> task = { publishOrganization(group, specFiles) }
+                return task
+            }
+            def results = executor.invokeAll(tasks).collectMany { Future<List<TargetResult>> future -> future.get() }
+            return publishers.collect { ApigeeTargetPublisher publisher ->
+                results.find { it.target.is(publisher.target) }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+    }
+
+    static void reportResults(List<TargetResult> targetResults) {
+
+        for (TargetResult targetResult : targetResults) {
+            if (targetResult.failure != null) {
+                LOGGER.lifecycle("Publishing to ${targetResult.target} failed: ${targetResult.failure.message}")
+            } else {
+                LOGGER.lifecycle("Publishing summary for ${targetResult.target}:")
+                ApigeeSpecPublisher.logResults(targetResult.results)
+            }
+        }
+
+        def failedTargets = targetResults.findAll { it.failed }
+        if (!failedTargets.isEmpty()) {
+            def exception = new RuntimeException("Failed to publish to ${failedTargets.size()} of " +
+                    "${targetResults.size()} Apigee targets: ${failedTargets*.target*.name}")
+            for (TargetResult failedTarget : failedTargets) {
+                if (failedTarget.failure != null) {
+                    exception.addSuppressed(failedTarget.failure)
+                }
+                failedTarget.results.findAll { it.failed }.each { exception.addSuppressed(it.failure) }
+            }
+            throw exception
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package io.everon
+
+class ApigeeToken {
+
+    String accessToken
+    String refreshToken
+    long expiresAt
+
+    static ApigeeToken fromTokenResponse(Map tokenResponse) {
+        def expiresIn = (tokenResponse.get("expires_in") ?: 0) as long
+        return new ApigeeToken(
+                accessToken: tokenResponse.get("access_token") as String,
+                refreshToken: tokenResponse.get("refresh_token") as String,
+                expiresAt: System.currentTimeMillis() + expiresIn * 1000)
+    }
+
+    boolean isValidFor(long millis) {
+        return accessToken && expiresAt > System.currentTimeMillis() + millis
+    }
+
+}
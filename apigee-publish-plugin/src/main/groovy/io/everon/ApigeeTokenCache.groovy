@@ -0,0 +1,109 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.concurrent.TimeUnit
+
+/**
+ * Caches Apigee tokens on disk between builds.
+ */
+class ApigeeTokenCache {
+
+    private static final Logger LOGGER = Logging.getLogger(ApigeeTokenCache)
+
+    static final long EXPIRY_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5)
+
+    File directory
+
+    ApigeeTokenCache(File directory) {
+        this.directory = directory
+    }
+
+    String obtainAccessToken(ApigeeHttpClient client, String username, String password) {
+        return obtainToken(client, username, password).accessToken
+    }
+
+    ApigeeToken obtainToken(ApigeeHttpClient client, String username, String password) {
+
+        File tokenFile = tokenFile(client, username)
+        ApigeeToken token = load(tokenFile)
+        if (token?.isValidFor(EXPIRY_MARGIN_MILLIS)) {
+            LOGGER.info("Reusing cached Apigee access token.")
+            return token
+        }
+
+        if (token?.refreshToken) {
+            try {
+                token = client.refreshApigeeToken(token.refreshToken)
+                save(tokenFile, token)
+                return token
+            } catch (Exception ex) {
+                LOGGER.info("Failed to refresh Apigee access token, authenticating with password. ${ex.message}")
+            }
+        }
+
+        token = client.obtainApigeeToken(username, password)
+        save(tokenFile, token)
+        return token
+
+    }
+
+    private File tokenFile(ApigeeHttpClient client, String username) {
+        return new File(directory, "${CacheFiles.sha256("${client.loginUrl}|${username}".toString())}.json")
+    }
+
+    private static ApigeeToken load(File tokenFile) {
+
+        if (!tokenFile.isFile()) {
+            return null
+        }
+        try {
+            def json = new JsonSlurper().parse(tokenFile, StandardCharsets.UTF_8.name()) as Map
+            return new ApigeeToken(
+                    accessToken: json.get("accessToken") as String,
+                    refreshToken: json.get("refreshToken") as String,
+                    expiresAt: json.get("expiresAt") as long)
+        } catch (Exception ex) {
+            LOGGER.warn("Ignoring unreadable Apigee token cache ${tokenFile}: ${ex.message}")
+            return null
+        }
+
+    }
+
+    private static void save(File tokenFile, ApigeeToken token) {
+
+        try {
+            def json = JsonOutput.toJson([
+                    accessToken : token.accessToken,
+                    refreshToken: token.refreshToken,
+                    expiresAt   : token.expiresAt])
+            CacheFiles.writeAtomically(tokenFile) { File tempFile ->
+                restrictToOwner(tempFile)
+                tempFile.setText(json, StandardCharsets.UTF_8.name())
+            }
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to cache Apigee access token in ${tokenFile}: ${ex.message}")
+        }
+
+    }
+
+    private static void restrictToOwner(File file) {
+
+        if (file.toPath().fileSystem.supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-------"))
+            return
+        }
+        file.setReadable(false, false)
+        file.setWritable(false, false)
+        file.setReadable(true, true)
+        file.setWritable(true, true)
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.everon
+
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.options.Option
+
+import java.time.Duration
+import java.util.function.Consumer
+
+/**
+ * Publishes the local specs, then republishes the changed ones until the build is cancelled.
+ */
+abstract class ApigeeWatchTask extends ApigeePublishTask {
+
+    @Internal
+    abstract Property<Duration> getDebounce()
+
+    @Internal
+    @Option(option = "snapshots", description = "Publishes API doc snapshots after each change.")
+    abstract Property<Boolean> getSnapshots()
+
+    ApigeeWatchTask() {
+        outputs.upToDateWhen { false }
+    }
+
+    @Override
+    @TaskAction
+    void publish() {
+
+        def files = localSpecFiles.files
+        def manifest = PublishManifest.load(manifestFile.get().asFile)
+        def specFiles = ApigeePublishPlugin.readSpecFiles(files.collect { it.path } as String[], bundler)
+        Map<File, String> hashes = new HashMap<>()
+        publishChanged(specFiles, hashes, manifest)
+
+        def watchedFiles = files + referencedSpecFiles.asFileTree.files + bundledSpecFiles.files
+        new SpecWatcher(watchedFiles, debounce.get()).withCloseable { SpecWatcher watcher ->
+            logger.lifecycle("Watching ${watchedFiles.size()} spec files for changes, cancel the build to stop watching.")
+            watcher.watch({ Set<File> changedFiles -> republish(changedFiles, hashes, manifest) } as Consumer<Set<File>>)
+        }
+
+    }
+
+    protected void republish(Set<File> changedFiles, Map<File, String> hashes, PublishManifest manifest) {
+
+        def specSourceFiles = localSpecFiles.files.collect { it.absoluteFile } as Set<File>
+        def candidates = changedFiles.every { specSourceFiles.contains(it.absoluteFile) }
+                ? changedFiles : specSourceFiles
+        def changedSpecs = new LinkedHashMap<String, SpecFile>()
+        for (File file : candidates) {
+            if (!file.isFile()) {
+                continue
+            }
+            try {
+                def specFile = ApigeePublishPlugin.readSpecFile(file, bundler)
+                if (specFile.hash != hashes.get(file.absoluteFile)) {
+                    changedSpecs.put(specFile.title, specFile)
+                }
+            } catch (Exception ex) {
+                logger.error("Failed to read ${file}, skipped until it changes again: ${ex.message}")
+            }
+        }
+        if (changedSpecs.isEmpty()) {
+            logger.info("Spec files ${changedFiles} changed without changing their content.")
+            return
+        }
+
+        logger.lifecycle("Republishing changed API definitions ${changedSpecs.keySet()}.")
+        publishChanged(changedSpecs, hashes, manifest)
+
+    }
+
+    protected void publishChanged(Map<String, SpecFile> specFiles, Map<File, String> hashes, PublishManifest manifest) {
+
+        def results = publishToTargets(specFiles, manifest, snapshots.get())
+        Set<String> failedSpecs = results.any { it.failure != null }
+                ? specFiles.keySet()
+                : results.collectMany { TargetResult result -> result.results.findAll { it.failed }*.specName } as Set<String>
+        specFiles.each { String specName, SpecFile specFile ->
+            if (!failedSpecs.contains(specName)) {
+                hashes.put(specFile.sourceFile.absoluteFile, specFile.hash)
+            }
+        }
+        try {
+            ApigeeTargetPublisher.reportResults(results)
+        } catch (RuntimeException ex) {
+            logger.error(ex.message)
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package io.everon
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+/**
+ * Hashing and writing of the files the plugin keeps between builds.
+ */
+class CacheFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024
+
+    static String sha256(String text) {
+        return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)).encodeHex().toString()
+    }
+
+    static String sha256(File file) {
+
+        def digest = MessageDigest.getInstance("SHA-256")
+        file.withInputStream { InputStream inputStream ->
+            byte[] buffer = new byte[BUFFER_SIZE]
+            for (int read = inputStream.read(buffer); read != -1; read = inputStream.read(buffer)) {
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().encodeHex().toString()
+
+    }
+
+    static void writeAtomically(File file, Closure write) {
+
+        file.parentFile.mkdirs()
+        def tempFile = Files.createTempFile(file.parentFile.toPath(), file.name, ".tmp")
+        try {
+            write.call(tempFile.toFile())
+            Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            Files.deleteIfExists(tempFile)
+        }
+
+    }
+
+    static void writeAtomically(File file, String text) {
+        writeAtomically(file) { File tempFile -> tempFile.setText(text, StandardCharsets.UTF_8.name()) }
+    }
+
+}
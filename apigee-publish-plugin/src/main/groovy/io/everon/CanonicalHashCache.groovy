@@ -0,0 +1,53 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Canonical spec hashes by location, kept for the version of the content they were computed for.
+ */
+class CanonicalHashCache {
+
+    private static final Logger LOGGER = Logging.getLogger(CanonicalHashCache)
+
+    File file
+    Map<String, Map<String, String>> entries = new ConcurrentHashMap<>()
+
+    CanonicalHashCache(File file) {
+        this.file = file
+    }
+
+    static CanonicalHashCache load(File file) {
+
+        def cache = new CanonicalHashCache(file)
+        if (file.isFile()) {
+            try {
+                def json = new JsonSlurper().parse(file, StandardCharsets.UTF_8.name())
+                (json as Map).each { key, value -> cache.entries.put(key as String, value as Map<String, String>) }
+            } catch (Exception ex) {
+                LOGGER.warn("Ignoring unreadable canonical hash cache ${file}: ${ex.message}")
+            }
+        }
+        return cache
+
+    }
+
+    String get(String location, String version) {
+        def entry = entries.get(location)
+        return entry != null && entry.get("version") == version ? entry.get("hash") : null
+    }
+
+    void put(String location, String version, String canonicalHash) {
+        entries.put(location, [version: version, hash: canonicalHash])
+    }
+
+    void save() {
+        CacheFiles.writeAtomically(file, JsonOutput.prettyPrint(JsonOutput.toJson(new TreeMap(entries))))
+    }
+
+}
@@ -0,0 +1,61 @@
+package io.everon
+
+import java.net.http.HttpResponse
+import java.nio.ByteBuffer
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.Flow
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counts the bytes of a response body received on the wire.
+ */
+class CountingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private final HttpResponse.BodySubscriber<T> delegate
+    private final AtomicLong byteCount
+
+    CountingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, AtomicLong byteCount) {
+        this.delegate = delegate
+        this.byteCount = byteCount
+    }
+
+    static <T> HttpResponse.BodyHandler<T> counting(HttpResponse.BodyHandler<T> bodyHandler, AtomicLong byteCount) {
+        return new HttpResponse.BodyHandler<T>() {
+            @Override
+            HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+                return new CountingBodySubscriber<T>(bodyHandler.apply(responseInfo), byteCount)
+            }
+        }
+    }
+
+    @Override
+    CompletionStage<T> getBody() {
+        return delegate.getBody()
+    }
+
+    @Override
+    void onSubscribe(Flow.Subscription subscription) {
+        delegate.onSubscribe(subscription)
+    }
+
+    @Override
+    void onNext(List<ByteBuffer> items) {
+        long received = 0
+        for (ByteBuffer item : items) {
+            received += item.remaining()
+        }
+        byteCount.addAndGet(received)
+        delegate.onNext(items)
+    }
+
+    @Override
+    void onError(Throwable throwable) {
+        delegate.onError(throwable)
+    }
+
+    @Override
+    void onComplete() {
+        delegate.onComplete()
+    }
+
+}
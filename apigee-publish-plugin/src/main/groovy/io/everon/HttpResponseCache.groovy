@@ -0,0 +1,121 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * On-disk cache of validated GET responses per identity and URL, bounded in size.
+ */
+class HttpResponseCache {
+
+    static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024
+
+    private static final Logger LOGGER = Logging.getLogger(HttpResponseCache)
+
+    File directory
+    String identity
+    long maxSize
+
+    HttpResponseCache(File directory, String identity) {
+        this(directory, identity, DEFAULT_MAX_SIZE)
+    }
+
+    HttpResponseCache(File directory, String identity, long maxSize) {
+        this.directory = directory
+        this.identity = identity
+        this.maxSize = maxSize
+    }
+
+    Entry lookup(String url) {
+
+        def metadataFile = metadataFile(url)
+        def bodyFile = bodyFile(url)
+        if (!metadataFile.isFile() || !bodyFile.isFile()) {
+            return null
+        }
+        try {
+            def metadata = new JsonSlurper().parse(metadataFile, StandardCharsets.UTF_8.name()) as Map
+            if (metadata.get("url") != url || metadata.get("identity") != identity) {
+                return null
+            }
+            bodyFile.setLastModified(System.currentTimeMillis())
+            return new Entry(
+                    statusCode: metadata.get("statusCode") as int,
+                    etag: metadata.get("etag") as String,
+                    lastModified: metadata.get("lastModified") as String,
+                    bodyFile: bodyFile)
+        } catch (Exception ex) {
+            LOGGER.warn("Ignoring unreadable cached response for ${url}: ${ex.message}")
+            return null
+        }
+
+    }
+
+    Entry store(String url, int statusCode, String etag, String lastModified, InputStream body) {
+
+        CacheFiles.writeAtomically(bodyFile(url)) { File tempFile ->
+            body.withCloseable { Files.copy(body, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING) }
+        }
+        CacheFiles.writeAtomically(metadataFile(url), JsonOutput.toJson(
+                [url: url, identity: identity, statusCode: statusCode, etag: etag, lastModified: lastModified]))
+
+        evictLeastRecentlyUsed(bodyFile(url))
+        return new Entry(statusCode: statusCode, etag: etag, lastModified: lastModified, bodyFile: bodyFile(url))
+
+    }
+
+    void remove(String url) {
+        metadataFile(url).delete()
+        bodyFile(url).delete()
+    }
+
+    private void evictLeastRecentlyUsed(File keptBodyFile) {
+
+        def bodyFiles = directory.listFiles({ File file -> file.name.endsWith(".body") } as FileFilter) ?: new File[0]
+        long size = bodyFiles.sum(0L) { File file -> file.length() } as long
+        for (File bodyFile : bodyFiles.sort { File file -> file.lastModified() }) {
+            if (size <= maxSize) {
+                break
+            }
+            if (bodyFile == keptBodyFile) {
+                continue
+            }
+            size -= bodyFile.length()
+            new File(directory, bodyFile.name.replaceAll(/\.body$/, ".json")).delete()
+            bodyFile.delete()
+        }
+
+    }
+
+    private File metadataFile(String url) {
+        return new File(directory, "${key(url)}.json")
+    }
+
+    private File bodyFile(String url) {
+        return new File(directory, "${key(url)}.body")
+    }
+
+    private String key(String url) {
+        return CacheFiles.sha256("${identity}|${url}".toString())
+    }
+
+    static class Entry {
+
+        int statusCode
+        String etag
+        String lastModified
+        File bodyFile
+
+        InputStream openBody() {
+            return new BufferedInputStream(new FileInputStream(bodyFile))
+        }
+
+    }
+
+}
@@ -0,0 +1,259 @@
+package io.everon
+
+import groovy.json.JsonException
+import groovy.transform.CompileStatic
+
+import java.util.regex.Pattern
+
+/**
+ * Streams an Apigee listing, keeping only the id, next page token and requested item fields.
+ */
+@CompileStatic
+class ListingReader {
+
+    static final String ID = "id"
+    static final String NEXT_PAGE_TOKEN = "nextPageToken"
+
+    private static final int OBJECT_START = (int) ('{' as char)
+    private static final int OBJECT_END = (int) ('}' as char)
+    private static final int ARRAY_START = (int) ('[' as char)
+    private static final int ARRAY_END = (int) (']' as char)
+    private static final int QUOTE = (int) ('"' as char)
+    private static final int ESCAPE = (int) ('\\' as char)
+    private static final int COMMA = (int) (',' as char)
+    private static final int COLON = (int) (':' as char)
+    private static final Pattern LITERAL = Pattern.compile(/true|false|null|-?\d+(\.\d+)?([eE][+-]?\d+)?/)
+
+    static Listing read(Reader reader, String itemsKey, Collection<String> itemFields) {
+
+        def json = new JsonReader(reader)
+        if (json.peek() != OBJECT_START) {
+            throw new JsonException("Expected a JSON object but found ${json.peek() == -1 ? "nothing" : (char) json.peek()}.")
+        }
+
+        def listing = new Listing()
+        json.readObject { String key ->
+            switch (key) {
+                case ID:
+                    listing.id = json.readScalar()
+                    break
+                case NEXT_PAGE_TOKEN:
+                    listing.nextPageToken = json.readScalar() ?: null
+                    break
+                case itemsKey:
+                    readItems(json, itemFields, listing.items)
+                    break
+                default:
+                    json.skipValue()
+            }
+        }
+        return listing
+
+    }
+
+    private static void readItems(JsonReader json, Collection<String> itemFields, List<Map<String, String>> items) {
+
+        if (json.peek() != ARRAY_START) {
+            json.skipValue()
+            return
+        }
+        json.readArray {
+            if (json.peek() != OBJECT_START) {
+                json.skipValue()
+                return
+            }
+            def fields = new LinkedHashMap<String, String>()
+            json.readObject { String field ->
+                if (itemFields.contains(field)) {
+                    fields.put(field, json.readScalar())
+                } else {
+                    json.skipValue()
+                }
+            }
+            items.add(fields)
+        }
+
+    }
+
+    static class Listing {
+
+        String id
+        String nextPageToken
+        List<Map<String, String>> items = []
+
+    }
+
+    private static class JsonReader {
+
+        private final Reader reader
+        private final char[] buffer = new char[8192]
+        private int position
+        private int limit
+
+        JsonReader(Reader reader) {
+            this.reader = reader
+        }
+
+        int peek() {
+            while (true) {
+                if (position == limit && !fill()) {
+                    return -1
+                }
+                char c = buffer[position]
+                if (!Character.isWhitespace(c)) {
+                    return (int) c
+                }
+                position++
+            }
+        }
+
+        private int read() {
+            if (position == limit && !fill()) {
+                return -1
+            }
+            return (int) buffer[position++]
+        }
+
+        private boolean fill() {
+            limit = reader.read(buffer)
+            position = 0
+            if (limit <= 0) {
+                limit = 0
+                return false
+            }
+            return true
+        }
+
+        void readObject(Closure member) {
+            expect(OBJECT_START)
+            if (consume(OBJECT_END)) {
+                return
+            }
+            while (true) {
+                def key = readString()
+                expect(COLON)
+                member.call(key)
+                if (!consume(COMMA)) {
+                    break
+                }
+            }
+            expect(OBJECT_END)
+        }
+
+        void readArray(Closure element) {
+            expect(ARRAY_START)
+            if (consume(ARRAY_END)) {
+                return
+            }
+            while (true) {
+                element.call()
+                if (!consume(COMMA)) {
+                    break
+                }
+            }
+            expect(ARRAY_END)
+        }
+
+        String readScalar() {
+            int c = peek()
+            if (c == QUOTE) {
+                return readString()
+            }
+            if (c == OBJECT_START || c == ARRAY_START) {
+                skipValue()
+                return null
+            }
+            def literal = readLiteral()
+            return literal == "null" ? null : literal
+        }
+
+        void skipValue() {
+            int c = peek()
+            if (c == OBJECT_START) {
+                readObject { skipValue() }
+            } else if (c == ARRAY_START) {
+                readArray { skipValue() }
+            } else if (c == QUOTE) {
+                readString()
+            } else {
+                readLiteral()
+            }
+        }
+
+        private String readString() {
+            expect(QUOTE)
+            def text = new StringBuilder()
+            for (int c = read(); c != QUOTE; c = read()) {
+                if (c == -1) {
+                    throw new JsonException("Unterminated JSON string.")
+                }
+                text.append((char) (c == ESCAPE ? readEscape() : c))
+            }
+            return text.toString()
+        }
+
+        private int readEscape() {
+            int c = read()
+            switch (c) {
+                case (int) ('b' as char): return (int) ('\b' as char)
+                case (int) ('f' as char): return (int) ('\f' as char)
+                case (int) ('n' as char): return (int) ('\n' as char)
+                case (int) ('r' as char): return (int) ('\r' as char)
+                case (int) ('t' as char): return (int) ('\t' as char)
+                case (int) ('u' as char):
+                    def hex = new StringBuilder()
+                    for (int i = 0; i < 4; i++) {
+                        int digit = read()
+                        if (digit == -1) {
+                            throw new JsonException("Invalid JSON unicode escape.")
+                        }
+                        hex.append((char) digit)
+                    }
+                    return Integer.parseInt(hex.toString(), 16)
+                case QUOTE:
+                case ESCAPE:
+                case (int) ('/' as char):
+                    return c
+                default:
+                    throw new JsonException("Invalid JSON escape character ${c == -1 ? "at end of input" : (char) c}.")
+            }
+        }
+
+        private String readLiteral() {
+            def literal = new StringBuilder()
+            for (int c = peek(); c != -1 && c != COMMA && c != OBJECT_END && c != ARRAY_END
+                    && !Character.isWhitespace(c); c = peekChar()) {
+                literal.append((char) read())
+            }
+            if (!LITERAL.matcher(literal).matches()) {
+                throw new JsonException("Invalid JSON value '${literal}'.")
+            }
+            return literal.toString()
+        }
+
+        private int peekChar() {
+            if (position == limit && !fill()) {
+                return -1
+            }
+            return (int) buffer[position]
+        }
+
+        private void expect(int expected) {
+            int c = peek()
+            if (c != expected) {
+                throw new JsonException("Expected '${(char) expected}' but found ${c == -1 ? "end of input" : "'${(char) c}'"}.")
+            }
+            position++
+        }
+
+        private boolean consume(int expected) {
+            if (peek() != expected) {
+                return false
+            }
+            position++
+            return true
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Hashes of the spec content last published, and the specs with a pending api doc snapshot.
+ */
+class PublishManifest {
+
+    private static final Logger LOGGER = Logging.getLogger(PublishManifest)
+    private static final String PENDING_SNAPSHOTS_KEY = "pendingSnapshots"
+
+    File file
+    Map<String, Map<String, String>> entries = new ConcurrentHashMap<>()
+    Map<String, Set<String>> snapshotsPending = new ConcurrentHashMap<>()
+
+    PublishManifest(File file) {
+        this.file = file
+    }
+
+    static PublishManifest load(File file) {
+
+        def manifest = new PublishManifest(file)
+        if (file.isFile()) {
+            try {
+                def json = new JsonSlurper().parse(file, StandardCharsets.UTF_8.name())
+                (json as Map).each { key, value ->
+                    if (key == PENDING_SNAPSHOTS_KEY) {
+                        (value as Map).each { portalKey, specNames ->
+                            manifest.snapshotsPending.put(portalKey as String, concurrentSet(specNames as Collection<String>))
+                        }
+                    } else {
+                        manifest.entries.put(key as String, value as Map<String, String>)
+                    }
+                }
+            } catch (Exception ex) {
+                LOGGER.warn("Ignoring unreadable publish manifest ${file}: ${ex.message}")
+            }
+        }
+        return manifest
+
+    }
+
+    boolean isUpToDate(String organizationName, String docId, String contentHash) {
+        return entries.get(key(organizationName, docId))?.get("hash") == contentHash
+    }
+
+    void record(String organizationName, String docId, String contentHash) {
+        entries.put(key(organizationName, docId), [hash: contentHash, publishedAt: Instant.now().toString()])
+    }
+
+    Set<String> pendingSnapshotSpecs(String organizationName, String portalName) {
+        return new LinkedHashSet<String>(snapshotsPending.getOrDefault(key(organizationName, portalName), []))
+    }
+
+    void addPendingSnapshots(String organizationName, String portalName, Collection<String> specNames) {
+        if (!specNames.isEmpty()) {
+            snapshotsPending.computeIfAbsent(key(organizationName, portalName), { concurrentSet([]) }).addAll(specNames)
+        }
+    }
+
+    void removePendingSnapshots(String organizationName, String portalName, Collection<String> specNames) {
+        snapshotsPending.computeIfPresent(key(organizationName, portalName), { portalKey, pendingSpecs ->
+            pendingSpecs.removeAll(specNames)
+            return pendingSpecs.isEmpty() ? null : pendingSpecs
+        })
+    }
+
+    void save() {
+
+        def json = new TreeMap<String, Object>(entries)
+        if (!snapshotsPending.isEmpty()) {
+            json.put(PENDING_SNAPSHOTS_KEY, snapshotsPending.collectEntries(new TreeMap()) { portalKey, specNames ->
+                [portalKey, specNames.sort()]
+            })
+        }
+        CacheFiles.writeAtomically(file, JsonOutput.prettyPrint(JsonOutput.toJson(json)))
+
+    }
+
+    private static String key(String organizationName, String id) {
+        return "${organizationName}/${id}"
+    }
+
+    private static Set<String> concurrentSet(Collection<String> values) {
+        Set<String> set = ConcurrentHashMap.newKeySet()
+        set.addAll(values)
+        return set
+    }
+
+}
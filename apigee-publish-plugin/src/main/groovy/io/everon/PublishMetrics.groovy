@@ -0,0 +1,181 @@
+package io.everon
+
+import groovy.json.JsonOutput
+
+import java.math.RoundingMode
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Records every Apigee call of a publish and summarises them per phase, target and spec.
+ */
+class PublishMetrics {
+
+    enum Phase {
+        LOGIN, LISTING, CREATE_DOC, CONTENT_GET, CONTENT_PUT, SNAPSHOT
+    }
+
+    private final Queue<RequestMetric> requests = new ConcurrentLinkedQueue<>()
+    private final ThreadLocal<String> currentSpec = new ThreadLocal<>()
+
+    RequestMetric start(Phase phase, String method, String targetName = null) {
+        def metric = new RequestMetric(phase, targetName, currentSpec.get(), method)
+        requests.add(metric)
+        return metric
+    }
+
+    def <T> T forSpec(String specName, Callable<T> work) {
+
+        def previousSpec = currentSpec.get()
+        currentSpec.set(specName)
+        try {
+            return work.call()
+        } finally {
+            if (previousSpec == null) {
+                currentSpec.remove()
+            } else {
+                currentSpec.set(previousSpec)
+            }
+        }
+
+    }
+
+    List<RequestMetric> getRequests() {
+        return new ArrayList<>(requests)
+    }
+
+    Map<String, Object> report(List<TargetResult> targetResults, Duration duration) {
+
+        def allRequests = getRequests()
+        def targets = new TreeMap<String, Object>()
+        for (TargetResult targetResult : targetResults) {
+            def targetName = targetResult.target.name
+            def targetRequests = allRequests.findAll { it.targetName == targetName }
+            def target = [
+                    organization: targetResult.target.organizationName,
+                    portal      : targetResult.target.portalName,
+                    status      : targetResult.failed ? "FAILED" : "COMPLETED"
+            ] as Map<String, Object>
+            if (targetResult.failure != null) {
+                target.failure = targetResult.failure.message
+            }
+            target.totals = statistics(targetRequests)
+            target.phases = phaseStatistics(targetRequests)
+            target.specs = specStatistics(targetResult.results, targetRequests)
+            targets.put(targetName, target)
+        }
+
+        return [
+                generatedAt   : Instant.now().toString(),
+                durationMillis: duration.toMillis(),
+                totals        : statistics(allRequests),
+                phases        : phaseStatistics(allRequests),
+                targets       : targets
+        ]
+
+    }
+
+    Map<String, Object> writeReport(File reportFile, List<TargetResult> targetResults, Duration duration) {
+
+        def report = report(targetResults, duration)
+        CacheFiles.writeAtomically(reportFile, JsonOutput.prettyPrint(JsonOutput.toJson(report)))
+        return report
+
+    }
+
+    private static Map<String, Object> specStatistics(List<PublishResult> results, List<RequestMetric> metrics) {
+        def specs = new TreeMap<String, Object>()
+        for (PublishResult result : results) {
+            def specRequests = metrics.findAll { it.specName == result.specName }
+            def spec = [status: result.status.name()] as Map<String, Object>
+            if (result.failed) {
+                spec.failure = result.failure.message
+            }
+            spec.putAll(statistics(specRequests))
+            spec.phases = phaseStatistics(specRequests)
+            specs.put(result.specName, spec)
+        }
+        return specs
+    }
+
+    private static Map<String, Object> phaseStatistics(List<RequestMetric> metrics) {
+        def phases = new LinkedHashMap<String, Object>()
+        for (Phase phase : Phase.values()) {
+            def phaseRequests = metrics.findAll { it.phase == phase }
+            if (!phaseRequests.isEmpty()) {
+                phases.put(phase.name(), statistics(phaseRequests))
+            }
+        }
+        return phases
+    }
+
+    static Map<String, Object> statistics(List<RequestMetric> metrics) {
+
+        List<Long> durations = metrics.collect { it.durationNanos }.sort()
+        return [
+                requests     : metrics.size(),
+                failed       : metrics.count { it.failed },
+                retries      : metrics.sum(0) { it.retries },
+                bytesSent    : metrics.sum(0L) { it.bytesSent.get() },
+                bytesReceived: metrics.sum(0L) { it.bytesReceived.get() },
+                totalMillis  : millis(durations.sum(0L) as long),
+                p50Millis    : millis(percentile(durations, 50)),
+                p90Millis    : millis(percentile(durations, 90)),
+                p99Millis    : millis(percentile(durations, 99)),
+                maxMillis    : millis(durations.isEmpty() ? 0L : durations.last())
+        ]
+
+    }
+
+    static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return 0L
+        }
+        int rank = (int) Math.ceil(percentile / 100d * sortedValues.size())
+        return sortedValues.get(Math.max(0, rank - 1))
+    }
+
+    private static BigDecimal millis(long nanos) {
+        return new BigDecimal(nanos).movePointLeft(6).setScale(3, RoundingMode.HALF_UP)
+    }
+
+    static class RequestMetric {
+
+        final Phase phase
+        final String targetName
+        final String specName
+        final String method
+        final long startNanos = System.nanoTime()
+        final AtomicLong bytesSent = new AtomicLong()
+        final AtomicLong bytesReceived = new AtomicLong()
+        volatile long durationNanos
+        volatile int statusCode
+        volatile int retries
+        volatile boolean failed
+
+        RequestMetric(Phase phase, String targetName, String specName, String method) {
+            this.phase = phase
+            this.targetName = targetName
+            this.specName = specName
+            this.method = method
+        }
+
+        void finish(int statusCode, int retries) {
+            this.durationNanos = System.nanoTime() - startNanos
+            this.statusCode = statusCode
+            this.retries = retries
+            this.failed = statusCode >= 400
+        }
+
+        void fail(int retries) {
+            this.durationNanos = System.nanoTime() - startNanos
+            this.retries = retries
+            this.failed = true
+        }
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package io.everon
+
+class PublishResult {
+
+    enum Status {
+        PUBLISHED, UNCHANGED, FAILED
+    }
+
+    String specName
+    Status status
+    Throwable failure
+
+    static PublishResult published(String specName) {
+        return new PublishResult(specName: specName, status: Status.PUBLISHED)
+    }
+
+    static PublishResult unchanged(String specName) {
+        return new PublishResult(specName: specName, status: Status.UNCHANGED)
+    }
+
+    static PublishResult failed(String specName, Throwable failure) {
+        return new PublishResult(specName: specName, status: Status.FAILED, failure: failure)
+    }
+
+    boolean isFailed() {
+        return status == Status.FAILED
+    }
+
+}
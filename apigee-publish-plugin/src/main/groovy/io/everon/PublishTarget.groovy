@@ -0,0 +1,29 @@
+package io.everon
+
+/**
+ * Resolved values of a target the publish task publishes to.
+ */
+class PublishTarget implements Serializable {
+
+    static final String DEFAULT_NAME = "default"
+
+    String name
+    String organizationName
+    String portalName
+    String username
+    String password
+
+    PublishTarget(String name, String organizationName, String portalName, String username, String password) {
+        this.name = name
+        this.organizationName = organizationName
+        this.portalName = portalName
+        this.username = username
+        this.password = password
+    }
+
+    @Override
+    String toString() {
+        return "${name} (${organizationName}${portalName ? "/${portalName}" : ""})"
+    }
+
+}
@@ -0,0 +1,8 @@
+package io.everon
+
+class RemoteApiDoc {
+
+    String id
+    String title
+
+}
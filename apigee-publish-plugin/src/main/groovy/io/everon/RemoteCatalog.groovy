@@ -0,0 +1,102 @@
+package io.everon
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Specs and API docs at Apigee by name and id. Of entries sharing a name the oldest is used.
+ */
+class RemoteCatalog {
+
+    private static final Logger LOGGER = Logging.getLogger(RemoteCatalog)
+
+    String folderId
+    private final Map<String, RemoteSpec> specsByName = new ConcurrentHashMap<>()
+    private final Map<String, RemoteSpec> specsById = new ConcurrentHashMap<>()
+    private final Map<String, RemoteApiDoc> apiDocsByTitle = new ConcurrentHashMap<>()
+    private final Map<String, RemoteApiDoc> apiDocsById = new ConcurrentHashMap<>()
+
+    RemoteCatalog(String folderId) {
+        this.folderId = folderId
+    }
+
+    static RemoteCatalog from(Map<String, Object> specsFolder, List<Map<String, Object>> apiDocs) {
+
+        def catalog = new RemoteCatalog(specsFolder.get("id") as String)
+        for (def spec : specsFolder.get("contents") ?: []) {
+            catalog.addSpec(new RemoteSpec(id: spec.get("id") as String, name: spec.get("name") as String))
+        }
+        for (def apiDoc : apiDocs ?: []) {
+            catalog.addApiDoc(new RemoteApiDoc(id: apiDoc.get("id") as String, title: apiDoc.get("title") as String))
+        }
+        return catalog
+
+    }
+
+    RemoteSpec findSpec(String name) {
+        return specsByName.get(name)
+    }
+
+    RemoteSpec findSpecById(String id) {
+        return specsById.get(id)
+    }
+
+    RemoteApiDoc findApiDoc(String title) {
+        return apiDocsByTitle.get(title)
+    }
+
+    RemoteApiDoc findApiDocById(String id) {
+        return apiDocsById.get(id)
+    }
+
+    Collection<RemoteSpec> getSpecs() {
+        return Collections.unmodifiableCollection(specsById.values())
+    }
+
+    Collection<RemoteApiDoc> getApiDocs() {
+        return Collections.unmodifiableCollection(apiDocsById.values())
+    }
+
+    void addSpec(RemoteSpec spec) {
+
+        if (spec.id != null) {
+            specsById.put(spec.id, spec)
+        }
+        if (spec.name != null) {
+            specsByName.merge(spec.name, spec, { RemoteSpec existing, RemoteSpec added ->
+                LOGGER.warn("Found more than one API spec named ${spec.name}, using the one with the lowest id.")
+                compareIds(existing.id, added.id) <= 0 ? existing : added
+            })
+        }
+
+    }
+
+    void addApiDoc(RemoteApiDoc apiDoc) {
+
+        if (apiDoc.id != null) {
+            apiDocsById.put(apiDoc.id, apiDoc)
+        }
+        if (apiDoc.title != null) {
+            apiDocsByTitle.merge(apiDoc.title, apiDoc, { RemoteApiDoc existing, RemoteApiDoc added ->
+                LOGGER.warn("Found more than one API doc titled ${apiDoc.title}, using the one with the lowest id.")
+                compareIds(existing.id, added.id) <= 0 ? existing : added
+            })
+        }
+
+    }
+
+    static int compareIds(String first, String second) {
+
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : 1) : -1
+        }
+        if (first.isLong() && second.isLong()) {
+            return Long.compare(first.toLong(), second.toLong())
+        }
+        return first <=> second
+
+    }
+
+}
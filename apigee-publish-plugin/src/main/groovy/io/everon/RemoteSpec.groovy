@@ -0,0 +1,8 @@
+package io.everon
+
+class RemoteSpec {
+
+    String id
+    String name
+
+}
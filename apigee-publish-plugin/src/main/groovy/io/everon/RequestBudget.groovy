@@ -0,0 +1,59 @@
+package io.everon
+
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * Token bucket limiting the request rate of a client, backing off as a whole when throttled.
+ */
+class RequestBudget {
+
+    private final double permitsPerNano
+    private final double capacity
+    private double availablePermits
+    private long lastRefill
+    private long pausedUntil
+
+    RequestBudget(int permitsPerSecond) {
+        this(permitsPerSecond, permitsPerSecond)
+    }
+
+    RequestBudget(int permitsPerSecond, int burst) {
+        this.permitsPerNano = permitsPerSecond / (double) TimeUnit.SECONDS.toNanos(1)
+        this.capacity = Math.max(1, burst)
+        this.availablePermits = capacity
+        this.lastRefill = System.nanoTime()
+        this.pausedUntil = lastRefill
+    }
+
+    void acquire() throws InterruptedException {
+
+        while (true) {
+            long waitNanos
+            synchronized (this) {
+                long now = System.nanoTime()
+                refill(now)
+                if (now - pausedUntil >= 0 && availablePermits >= 1) {
+                    availablePermits -= 1
+                    return
+                }
+                waitNanos = Math.max(pausedUntil - now, (long) Math.ceil((1 - availablePermits) / permitsPerNano))
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(1L, waitNanos))
+        }
+
+    }
+
+    synchronized void backOff(Duration delay) {
+        long until = System.nanoTime() + delay.toNanos()
+        if (until - pausedUntil > 0) {
+            pausedUntil = until
+        }
+    }
+
+    private void refill(long now) {
+        availablePermits = Math.min(capacity, availablePermits + (now - lastRefill) * permitsPerNano)
+        lastRefill = now
+    }
+
+}
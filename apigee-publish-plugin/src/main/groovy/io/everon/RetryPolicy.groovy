@@ -0,0 +1,81 @@
+package io.everon
+
+import java.net.http.HttpConnectTimeoutException
+import java.time.Duration
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Retries throttled and failed calls with jittered backoff. POST is only retried when it was not processed.
+ */
+class RetryPolicy {
+
+    static final int DEFAULT_MAX_RETRIES = 3
+    static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(500)
+    static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30)
+
+    private static final Set<String> IDEMPOTENT_METHODS = ["GET", "HEAD", "PUT", "DELETE", "OPTIONS"] as Set
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = [429, 502, 503, 504] as Set
+    private static final int TOO_MANY_REQUESTS = 429
+
+    int maxRetries
+    Duration initialBackoff
+    Duration maxBackoff
+
+    RetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF)
+    }
+
+    RetryPolicy(int maxRetries, Duration initialBackoff, Duration maxBackoff) {
+        this.maxRetries = maxRetries
+        this.initialBackoff = initialBackoff
+        this.maxBackoff = maxBackoff
+    }
+
+    boolean isRetryable(String method, int statusCode, int attempt) {
+        if (attempt >= maxRetries || !RETRYABLE_STATUS_CODES.contains(statusCode)) {
+            return false
+        }
+        return IDEMPOTENT_METHODS.contains(method) || statusCode == TOO_MANY_REQUESTS
+    }
+
+    boolean isRetryable(String method, IOException failure, int attempt) {
+        if (attempt >= maxRetries) {
+            return false
+        }
+        return IDEMPOTENT_METHODS.contains(method) || failure instanceof ConnectException
+                || failure instanceof HttpConnectTimeoutException
+    }
+
+    Duration delay(int attempt, String retryAfter) {
+
+        def requestedDelay = parseRetryAfter(retryAfter)
+        if (requestedDelay != null) {
+            return requestedDelay > maxBackoff ? maxBackoff : requestedDelay
+        }
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() * (1L << Math.min(attempt, 20)))
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1))
+
+    }
+
+    static Duration parseRetryAfter(String retryAfter) {
+
+        if (!retryAfter?.trim()) {
+            return null
+        }
+        def value = retryAfter.trim()
+        if (value.isLong()) {
+            return Duration.ofSeconds(Math.max(0L, value.toLong()))
+        }
+        try {
+            def retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+            def delay = Duration.between(ZonedDateTime.now(retryAt.zone), retryAt)
+            return delay.isNegative() ? Duration.ZERO : delay
+        } catch (Exception ignored) {
+            return null
+        }
+
+    }
+
+}
@@ -0,0 +1,437 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.yaml.snakeyaml.DumperOptions
+import org.yaml.snakeyaml.Yaml
+import org.yaml.snakeyaml.nodes.MappingNode
+import org.yaml.snakeyaml.nodes.Node
+import org.yaml.snakeyaml.nodes.NodeTuple
+import org.yaml.snakeyaml.nodes.ScalarNode
+import org.yaml.snakeyaml.nodes.SequenceNode
+import org.yaml.snakeyaml.nodes.Tag
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Bundles external {@code $ref}s into the components of the spec. Bundles are cached until an input changes.
+ */
+class SpecBundler {
+
+    private static final Logger LOGGER = Logging.getLogger(SpecBundler)
+    private static final String REF = '$ref'
+    private static final int FORMAT = 2
+    private static final List<String> COMPONENT_TYPES = ["schemas", "responses", "parameters", "examples",
+                                                         "requestBodies", "headers", "securitySchemes", "links",
+                                                         "callbacks"]
+    private static final List<String> SCHEMA_PARENT_KEYS = ["properties", "patternProperties", "allOf", "anyOf",
+                                                            "oneOf", "schemas", "definitions"]
+    private static final List<String> SCHEMA_KEYS = ["schema", "items", "additionalProperties", "not"]
+
+    File directory
+    private final Map<File, Fragment> fragments = new ConcurrentHashMap<>()
+
+    SpecBundler(File directory) {
+        this.directory = directory
+    }
+
+    File bundle(File specFile) {
+
+        def spec = specFile.canonicalFile
+        def metadataFile = new File(directory, "${key(spec)}.json")
+        def bundleFile = new File(directory, "${key(spec)}.yaml")
+        def cachedBundle = cachedBundle(spec, metadataFile, bundleFile)
+        if (cachedBundle != null) {
+            LOGGER.info("Reusing bundle of ${specFile}, none of its files changed.")
+            return cachedBundle
+        }
+
+        Map<File, String> inputs = new LinkedHashMap<>()
+        def bundled = bundleDocument(spec, document(spec, inputs), inputs)
+        def external = inputs.size() > 1
+
+        if (external) {
+            CacheFiles.writeAtomically(bundleFile) { File tempFile ->
+                tempFile.withWriter("UTF-8") { Writer writer -> new Yaml(dumperOptions()).serialize(bundled, writer) }
+            }
+            LOGGER.info("Bundled ${specFile} with ${inputs.size() - 1} referenced files.")
+        } else {
+            bundleFile.delete()
+        }
+        def metadata = JsonOutput.toJson([
+                format : FORMAT,
+                spec   : spec.path,
+                bundled: external,
+                inputs : inputs.collectEntries { file, hash -> [file.path, hash] }])
+        CacheFiles.writeAtomically(metadataFile, metadata)
+        return external ? bundleFile : spec
+
+    }
+
+    Set<File> recordedInputs(File specFile) {
+
+        def metadataFile = new File(directory, "${key(specFile.canonicalFile)}.json")
+        if (!metadataFile.isFile()) {
+            return [] as Set<File>
+        }
+        try {
+            def metadata = new JsonSlurper().parse(metadataFile, StandardCharsets.UTF_8.name()) as Map
+            return (metadata.get("inputs") as Map<String, String>).keySet().collect { new File(it) } as Set<File>
+        } catch (Exception ex) {
+            LOGGER.warn("Ignoring unreadable bundle metadata ${metadataFile}: ${ex.message}")
+            return [] as Set<File>
+        }
+
+    }
+
+    private static File cachedBundle(File spec, File metadataFile, File bundleFile) {
+
+        if (!metadataFile.isFile()) {
+            return null
+        }
+        try {
+            def metadata = new JsonSlurper().parse(metadataFile, StandardCharsets.UTF_8.name()) as Map
+            def inputs = metadata.get("inputs") as Map<String, String>
+            def unchanged = metadata.get("format") == FORMAT && metadata.get("spec") == spec.path && inputs.every { path, hash ->
+                def input = new File(path)
+                input.isFile() && CacheFiles.sha256(input) == hash
+            }
+            if (!unchanged) {
+                return null
+            }
+            if (!metadata.get("bundled")) {
+                return spec
+            }
+            return bundleFile.isFile() ? bundleFile : null
+        } catch (Exception ex) {
+            LOGGER.warn("Ignoring unreadable bundle metadata ${metadataFile}: ${ex.message}")
+            return null
+        }
+
+    }
+
+    private Node document(File file, Map<File, String> inputs) {
+
+        def hash = inputs.get(file)
+        if (hash == null) {
+            if (!file.isFile()) {
+                throw new RuntimeException("Referenced spec file ${file} does not exist.")
+            }
+            hash = CacheFiles.sha256(file)
+            inputs.put(file, hash)
+        }
+        def fragment = fragments.get(file)
+        if (fragment == null || fragment.hash != hash) {
+            def root = file.withReader("UTF-8") { Reader reader -> new Yaml().compose(reader) }
+            fragment = new Fragment(hash: hash, root: root)
+            fragments.put(file, fragment)
+        }
+        return fragment.root
+
+    }
+
+    private Node bundleDocument(File spec, Node root, Map<File, String> inputs) {
+
+        def bundle = new Bundle(spec: spec, root: root, inputs: inputs,
+                swagger: root instanceof MappingNode && child(root as MappingNode, "swagger") != null)
+        registerComponentReferences(bundle)
+        def references = new ArrayDeque<String>([referenceKey(spec, "")])
+        def bundled = resolve(root, spec, [], bundle, references)
+        if (bundle.components.isEmpty()) {
+            return bundled
+        }
+        bundle.components.each { List<String> section, Map<String, Node> components ->
+            def mapping = sectionMapping(bundled as MappingNode, section)
+            components.each { String name, Node component -> mapping.value.add(new NodeTuple(scalar(name), component)) }
+        }
+        return bundled
+
+    }
+
+    private static void registerComponentReferences(Bundle bundle) {
+
+        if (!(bundle.root instanceof MappingNode)) {
+            return
+        }
+        def sections = bundle.swagger
+                ? ["schemas", "parameters", "responses"].collect { section(it, true) }
+                : COMPONENT_TYPES.collect { section(it, false) }
+        for (List<String> componentSection : sections) {
+            def components = find(bundle.root, componentSection)
+            if (!(components instanceof MappingNode)) {
+                continue
+            }
+            for (NodeTuple tuple : (components as MappingNode).value) {
+                def reference = tuple.valueNode instanceof MappingNode ? referenceOf(tuple.valueNode as MappingNode) : null
+                if (reference != null && !isUrl(reference) && !reference.startsWith("#")) {
+                    bundle.references.putIfAbsent(
+                            targetKey(reference, bundle.spec), localReference(componentSection + keyOf(tuple)))
+                }
+            }
+        }
+
+    }
+
+    private Node resolve(Node node, File file, List<String> path, Bundle bundle, Deque<String> references) {
+
+        if (node instanceof MappingNode) {
+            def mapping = node as MappingNode
+            def reference = referenceOf(mapping)
+            if (reference != null && !isUrl(reference) && !(file == bundle.spec && reference.startsWith("#"))) {
+                return resolveReference(reference, file, path, bundle, references)
+            }
+            def tuples = mapping.value.collect { NodeTuple tuple ->
+                new NodeTuple(resolve(tuple.keyNode, file, path, bundle, references),
+                        resolve(tuple.valueNode, file, path + keyOf(tuple), bundle, references))
+            }
+            return new MappingNode(mapping.tag, tuples, mapping.flowStyle)
+        } else if (node instanceof SequenceNode) {
+            def sequence = node as SequenceNode
+            def items = []
+            sequence.value.eachWithIndex { Node item, int index ->
+                items.add(resolve(item, file, path + String.valueOf(index), bundle, references))
+            }
+            return new SequenceNode(sequence.tag, items, sequence.flowStyle)
+        } else if (node instanceof ScalarNode) {
+            def scalar = node as ScalarNode
+            return new ScalarNode(scalar.tag, scalar.value, null, null, scalar.scalarStyle)
+        }
+        return node
+
+    }
+
+    private Node resolveReference(String reference, File file, List<String> path, Bundle bundle,
+                                  Deque<String> references) {
+
+        def separator = reference.indexOf('#')
+        def pointer = separator < 0 ? "" : reference.substring(separator + 1)
+        def target = targetFile(reference, file)
+        if (target == bundle.spec && !pointer.isEmpty()) {
+            return referenceNode("#" + pointer)
+        }
+
+        def targetId = referenceKey(target, pointer)
+        def here = localReference(path)
+        def existingReference = bundle.references.get(targetId)
+        if (existingReference != null && existingReference != here) {
+            return referenceNode(existingReference)
+        }
+        def componentSection = section(componentType(path), bundle.swagger)
+        if (componentSection != null && path.size() == componentSection.size() + 1
+                && path.subList(0, componentSection.size()) == componentSection) {
+            bundle.references.putIfAbsent(targetId, here)
+            return resolve(select(document(target, bundle.inputs), pointer, reference, file), target, path, bundle,
+                    new ArrayDeque<String>())
+        }
+        if (componentSection != null) {
+            def name = bundle.reserveName(componentSection, componentName(target, pointer))
+            def componentPath = componentSection + name
+            bundle.references.put(targetId, localReference(componentPath))
+            def components = bundle.components.computeIfAbsent(componentSection, { new LinkedHashMap<String, Node>() })
+            components.put(name, null)
+            components.put(name, resolve(select(document(target, bundle.inputs), pointer, reference, file), target,
+                    componentPath, bundle, new ArrayDeque<String>()))
+            return referenceNode(localReference(componentPath))
+        }
+
+        if (references.contains(targetId)) {
+            throw new RuntimeException("Circular ${REF} ${reference} in ${file}, it cannot be inlined.")
+        }
+        references.push(targetId)
+        def resolved = resolve(
+                select(document(target, bundle.inputs), pointer, reference, file), target, path, bundle, references)
+        references.pop()
+        return resolved
+
+    }
+
+    private static String componentType(List<String> path) {
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            def name = path.get(i)
+            def parent = i > 0 ? path.get(i - 1) : null
+            if (SCHEMA_PARENT_KEYS.contains(parent) || SCHEMA_KEYS.contains(name)) {
+                return "schemas"
+            }
+            if (name == "requestBody") {
+                return "requestBodies"
+            }
+            if (COMPONENT_TYPES.contains(parent)) {
+                return parent
+            }
+            if (parent == "paths") {
+                return null
+            }
+        }
+        return null
+
+    }
+
+    private static List<String> section(String componentType, boolean swagger) {
+        if (componentType == null) {
+            return null
+        }
+        if (!swagger) {
+            return ["components", componentType]
+        }
+        switch (componentType) {
+            case "schemas": return ["definitions"]
+            case "parameters": return ["parameters"]
+            case "responses": return ["responses"]
+            default: return null
+        }
+    }
+
+    private static MappingNode sectionMapping(MappingNode root, List<String> section) {
+
+        def mapping = root
+        for (String name : section) {
+            def tuple = mapping.value.find { NodeTuple candidate -> keyOf(candidate) == name }
+            if (tuple?.valueNode instanceof MappingNode) {
+                mapping = tuple.valueNode as MappingNode
+                continue
+            }
+            def child = new MappingNode(Tag.MAP, new ArrayList<NodeTuple>(), DumperOptions.FlowStyle.BLOCK)
+            if (tuple != null) {
+                mapping.value.set(mapping.value.indexOf(tuple), new NodeTuple(tuple.keyNode, child))
+            } else {
+                mapping.value.add(new NodeTuple(scalar(name), child))
+            }
+            mapping = child
+        }
+        return mapping
+
+    }
+
+    private static String componentName(File target, String pointer) {
+        def tokens = pointer.split('/').findAll { !it.isEmpty() }
+        def name = tokens.isEmpty()
+                ? target.name.replaceAll(/\.[^.]*$/, "")
+                : URLDecoder.decode(tokens.last(), "UTF-8").replace('~1', '/').replace('~0', '~')
+        name = name.replaceAll(/[^A-Za-z0-9._-]/, "_")
+        return name.isEmpty() ? "Component" : name
+    }
+
+    private static String localReference(List<String> path) {
+        return "#/" + path.collect { it.replace('~', '~0').replace('/', '~1') }.join("/")
+    }
+
+    private static MappingNode referenceNode(String reference) {
+        def value = new ScalarNode(Tag.STR, reference, null, null, DumperOptions.ScalarStyle.SINGLE_QUOTED)
+        return new MappingNode(Tag.MAP, [new NodeTuple(scalar(REF), value)], DumperOptions.FlowStyle.BLOCK)
+    }
+
+    private static ScalarNode scalar(String value) {
+        return new ScalarNode(Tag.STR, value, null, null, DumperOptions.ScalarStyle.PLAIN)
+    }
+
+    private static String keyOf(NodeTuple tuple) {
+        return tuple.keyNode instanceof ScalarNode ? (tuple.keyNode as ScalarNode).value : ""
+    }
+
+    private static Node child(MappingNode mapping, String name) {
+        return mapping.value.find { NodeTuple tuple -> keyOf(tuple) == name }?.valueNode
+    }
+
+    private static Node find(Node root, List<String> path) {
+        def node = root
+        for (String name : path) {
+            node = node instanceof MappingNode ? child(node as MappingNode, name) : null
+        }
+        return node
+    }
+
+    private static File targetFile(String reference, File file) {
+        def separator = reference.indexOf('#')
+        def path = separator < 0 ? reference : reference.substring(0, separator)
+        return path.isEmpty() ? file : new File(file.parentFile, URLDecoder.decode(path, "UTF-8")).canonicalFile
+    }
+
+    private static String targetKey(String reference, File file) {
+        def separator = reference.indexOf('#')
+        return referenceKey(targetFile(reference, file), separator < 0 ? "" : reference.substring(separator + 1))
+    }
+
+    private static String referenceKey(File target, String pointer) {
+        return "${target.path}#${pointer}".toString()
+    }
+
+    private static String referenceOf(MappingNode mapping) {
+        def tuple = mapping.value.find { NodeTuple candidate ->
+            candidate.keyNode instanceof ScalarNode && (candidate.keyNode as ScalarNode).value == REF
+        }
+        return tuple?.valueNode instanceof ScalarNode ? (tuple.valueNode as ScalarNode).value : null
+    }
+
+    private static boolean isUrl(String reference) {
+        return reference ==~ /^[A-Za-z][A-Za-z0-9+.-]*:.*/
+    }
+
+    private static Node select(Node root, String pointer, String reference, File file) {
+
+        def node = root
+        for (String token : pointer.split('/').findAll { !it.isEmpty() }) {
+            def name = URLDecoder.decode(token, "UTF-8").replace('~1', '/').replace('~0', '~')
+            if (node instanceof MappingNode) {
+                node = (node as MappingNode).value.find { NodeTuple tuple ->
+                    tuple.keyNode instanceof ScalarNode && (tuple.keyNode as ScalarNode).value == name
+                }?.valueNode
+            } else if (node instanceof SequenceNode && name.isInteger()) {
+                def items = (node as SequenceNode).value
+                node = name.toInteger() < items.size() ? items.get(name.toInteger()) : null
+            } else {
+                node = null
+            }
+            if (node == null) {
+                throw new RuntimeException("Could not resolve ${REF} ${reference} in ${file}.")
+            }
+        }
+        return node
+
+    }
+
+    private static DumperOptions dumperOptions() {
+        def options = new DumperOptions()
+        options.defaultFlowStyle = DumperOptions.FlowStyle.BLOCK
+        options.width = Integer.MAX_VALUE
+        return options
+    }
+
+    private static String key(File spec) {
+        return "${spec.name.replaceAll(/\.[^.]*$/, "")}-${CacheFiles.sha256(spec.path).substring(0, 16)}"
+    }
+
+    private static class Fragment {
+        String hash
+        Node root
+    }
+
+    private static class Bundle {
+
+        File spec
+        Node root
+        Map<File, String> inputs
+        boolean swagger
+        Map<String, String> references = new HashMap<>()
+        Map<List<String>, Map<String, Node>> components = new LinkedHashMap<>()
+        Map<List<String>, Set<String>> names = new HashMap<>()
+
+        String reserveName(List<String> section, String name) {
+            def used = names.computeIfAbsent(section, {
+                def existing = find(root, section)
+                existing instanceof MappingNode ? (existing as MappingNode).value.collect { keyOf(it) } as Set<String> : [] as Set<String>
+            })
+            def candidate = name
+            for (int i = 2; used.contains(candidate); i++) {
+                candidate = name + i
+            }
+            used.add(candidate)
+            return candidate
+        }
+
+    }
+
+}
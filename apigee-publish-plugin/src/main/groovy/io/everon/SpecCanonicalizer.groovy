@@ -0,0 +1,78 @@
+package io.everon
+
+import groovy.json.JsonOutput
+import org.yaml.snakeyaml.Yaml
+import org.yaml.snakeyaml.nodes.MappingNode
+import org.yaml.snakeyaml.nodes.Node
+import org.yaml.snakeyaml.nodes.NodeTuple
+import org.yaml.snakeyaml.nodes.ScalarNode
+import org.yaml.snakeyaml.nodes.SequenceNode
+
+import java.nio.charset.StandardCharsets
+import java.security.DigestOutputStream
+import java.security.MessageDigest
+
+/**
+ * Hashes a spec in canonical form, so formatting, key order and comments do not change the hash.
+ */
+class SpecCanonicalizer {
+
+    static String canonicalHash(String specContent) {
+        return canonicalHash(new StringReader(specContent))
+    }
+
+    static String canonicalHash(File specFile) {
+        return specFile.withReader("UTF-8") { Reader reader -> canonicalHash(reader) }
+    }
+
+    static String canonicalHash(Reader reader) {
+
+        Node document = new Yaml().compose(reader)
+        def digest = MessageDigest.getInstance("SHA-256")
+        new OutputStreamWriter(new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8)
+                .withCloseable { Writer writer -> write(document, writer) }
+        return digest.digest().encodeHex().toString()
+
+    }
+
+    private static void write(Node node, Writer writer) {
+
+        if (node instanceof MappingNode) {
+            def entries = (node as MappingNode).value
+                    .collect { NodeTuple tuple -> [canonical(tuple.keyNode), tuple.valueNode] }
+                    .sort { it[0] as String }
+            writer.write('{')
+            entries.eachWithIndex { entry, index ->
+                if (index > 0) {
+                    writer.write(',')
+                }
+                writer.write(entry[0] as String)
+                writer.write(':')
+                write(entry[1] as Node, writer)
+            }
+            writer.write('}')
+        } else if (node instanceof SequenceNode) {
+            writer.write('[')
+            (node as SequenceNode).value.eachWithIndex { Node item, index ->
+                if (index > 0) {
+                    writer.write(',')
+                }
+                write(item, writer)
+            }
+            writer.write(']')
+        } else if (node instanceof ScalarNode) {
+            writer.write(node.tag.value)
+            writer.write(JsonOutput.toJson((node as ScalarNode).value))
+        } else {
+            writer.write('null')
+        }
+
+    }
+
+    private static String canonical(Node node) {
+        def writer = new StringWriter()
+        write(node, writer)
+        return writer.toString()
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.everon
+
+/**
+ * Local spec file identified by its title. The source file differs when the spec is bundled.
+ */
+class SpecFile {
+
+    String title
+    File file
+    File sourceFile
+    private String hash
+
+    SpecFile(String title, File file) {
+        this(title, file, file)
+    }
+
+    SpecFile(String title, File file, File sourceFile) {
+        this.title = title
+        this.file = file
+        this.sourceFile = sourceFile
+    }
+
+    synchronized String getHash() {
+
+        if (hash == null) {
+            hash = CacheFiles.sha256(file)
+        }
+        return hash
+
+    }
+
+}
@@ -0,0 +1,8 @@
+package io.everon
+
+class SpecMetadata {
+
+    String title
+    String version
+
+}
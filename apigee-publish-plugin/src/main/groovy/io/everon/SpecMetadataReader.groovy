@@ -0,0 +1,100 @@
+package io.everon
+
+import org.yaml.snakeyaml.Yaml
+import org.yaml.snakeyaml.events.AliasEvent
+import org.yaml.snakeyaml.events.CollectionEndEvent
+import org.yaml.snakeyaml.events.Event
+import org.yaml.snakeyaml.events.MappingStartEvent
+import org.yaml.snakeyaml.events.ScalarEvent
+import org.yaml.snakeyaml.events.SequenceStartEvent
+
+/**
+ * Reads {@code info.title} and {@code info.version} from the YAML events, stopping after {@code info}.
+ */
+class SpecMetadataReader {
+
+    private static final String INFO = "info"
+    private static final String TITLE = "title"
+    private static final String VERSION = "version"
+
+    static SpecMetadata read(File specFile) {
+        try {
+            return specFile.withReader("UTF-8") { Reader reader -> read(reader) }
+        } catch (RuntimeException ex) {
+            throw new RuntimeException("Could not read title field of spec file ${specFile}: ${ex.message}", ex)
+        }
+    }
+
+    static SpecMetadata read(String specContent) {
+        return read(new StringReader(specContent))
+    }
+
+    static SpecMetadata read(Reader reader) {
+
+        def metadata = new SpecMetadata()
+        Deque<Frame> frames = new ArrayDeque<>()
+        for (Event event : new Yaml().parse(reader)) {
+            if (event instanceof CollectionEndEvent) {
+                Frame frame = frames.pop()
+                if (frame.isInfo(frames.size())) {
+                    break
+                }
+            } else if (event instanceof ScalarEvent || event instanceof AliasEvent
+                    || event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+                Frame parent = frames.peek()
+                String key = parent?.acceptNode(event)
+                if (key != null && parent.isInfo(frames.size() - 1) && event instanceof ScalarEvent) {
+                    if (key == TITLE) {
+                        metadata.title = (event as ScalarEvent).value
+                    } else if (key == VERSION) {
+                        metadata.version = (event as ScalarEvent).value
+                    }
+                    if (metadata.title != null && metadata.version != null) {
+                        break
+                    }
+                }
+                if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+                    frames.push(new Frame(event instanceof MappingStartEvent, key))
+                }
+            }
+        }
+
+        if (metadata.title == null) {
+            throw new RuntimeException("Could not find info.title field in spec content.")
+        }
+        return metadata
+
+    }
+
+    private static class Frame {
+
+        boolean mapping
+        String parentKey
+        boolean expectingKey = true
+        String currentKey
+
+        Frame(boolean mapping, String parentKey) {
+            this.mapping = mapping
+            this.parentKey = parentKey
+        }
+
+        String acceptNode(Event event) {
+            if (!mapping) {
+                return null
+            }
+            if (expectingKey) {
+                currentKey = event instanceof ScalarEvent ? (event as ScalarEvent).value : null
+                expectingKey = false
+                return null
+            }
+            expectingKey = true
+            return currentKey
+        }
+
+        boolean isInfo(int depth) {
+            return mapping && depth == 1 && parentKey == INFO
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.everon
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.FileSystems
+import java.nio.file.Path
+import java.nio.file.StandardWatchEventKinds
+import java.nio.file.WatchEvent
+import java.nio.file.WatchKey
+import java.nio.file.WatchService
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+/**
+ * Watches spec files and reports each burst of changes once no event arrived for the debounce period.
+ */
+class SpecWatcher implements Closeable {
+
+    private static final Logger LOGGER = Logging.getLogger(SpecWatcher)
+
+    private final Set<Path> files
+    private final Duration debounce
+    private final WatchService watchService
+
+    SpecWatcher(Collection<File> files, Duration debounce) {
+
+        this.files = files.collect { it.toPath().toAbsolutePath().normalize() } as Set<Path>
+        this.debounce = debounce
+        this.watchService = FileSystems.getDefault().newWatchService()
+        for (Path directory : this.files.collect { it.parent }.unique()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY)
+        }
+
+    }
+
+    void watch(Consumer<Set<File>> onChange) {
+
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>()
+                WatchKey key = watchService.take()
+                while (key != null) {
+                    collectChanges(key, changed)
+                    key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)
+                }
+                if (!changed.isEmpty()) {
+                    onChange.accept(changed.collect { it.toFile() } as Set<File>)
+                }
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt()
+        } catch (ClosedWatchServiceException ignored) {
+            LOGGER.info("Stopped watching spec files.")
+        }
+
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> changed) {
+
+        def directory = key.watchable() as Path
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(files.findAll { it.parent == directory })
+            } else {
+                def path = directory.resolve(event.context() as Path).normalize()
+                if (files.contains(path)) {
+                    changed.add(path)
+                }
+            }
+        }
+        key.reset()
+
+    }
+
+    @Override
+    void close() {
+        watchService.close()
+    }
+
+}
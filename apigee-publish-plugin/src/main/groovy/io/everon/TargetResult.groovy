@@ -0,0 +1,24 @@
+package io.everon
+
+/**
+ * Results of the specs published to one target, or the failure that prevented publishing.
+ */
+class TargetResult {
+
+    PublishTarget target
+    List<PublishResult> results = []
+    Throwable failure
+
+    static TargetResult completed(PublishTarget target, List<PublishResult> results) {
+        return new TargetResult(target: target, results: results)
+    }
+
+    static TargetResult failed(PublishTarget target, Throwable failure) {
+        return new TargetResult(target: target, failure: failure)
+    }
+
+    boolean isFailed() {
+        return failure != null || results.any { it.failed }
+    }
+
+}
@@ -8,7 +8,13 @@ import org.mockserver.client.MockServerClient;
 import org.mockserver.junit.jupiter.MockServerExtension;
 import org.mockserver.junit.jupiter.MockServerSettings;
 import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -77,6 +83,31 @@ class ApigeeHttpClientTest {
 
     }
 
+    @Test
+    void refreshApigeeTokenSuccessfully() {
+
+        client.setLoginUrl("http://127.0.0.1:8787/oauth/token");
+        HttpRequest requestDefinition = request()
+                .withMethod("POST")
+                .withPath("/oauth/token")
+                .withBody("refresh_token=refresh&grant_type=refresh_token")
+                .withHeader("Authorization", "Basic " + ApigeeConstants.APIGEE_PUBLIC_CREDENTIALS);
+        mockServerClient
+                .when(requestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withBody("{ \"access_token\": \"access\", \"refresh_token\": \"refresh2\", " +
+                                "\"expires_in\": 1799 }"));
+
+        ApigeeToken token = client.refreshApigeeToken("refresh");
+
+        assertThat(token.getAccessToken()).isEqualTo("access");
+        assertThat(token.getRefreshToken()).isEqualTo("refresh2");
+        assertThat(token.isValidFor(0)).isTrue();
+        mockServerClient.verify(requestDefinition);
+
+    }
+
     @Test
     void getExistingSpecsFolderSuccessfully() {
 
@@ -123,6 +154,100 @@ class ApigeeHttpClientTest {
 
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    void getExistingSpecContentStaticSuccessfully() {
+
+        String accessToken = "You shall pass!";
+        HttpRequest requestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/1/content")
+                .withHeader("Authorization", "Bearer " + accessToken);
+        mockServerClient
+                .when(requestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withBody("openapi: 3.0.2"));
+
+        String content = ApigeeHttpClient.getExistingSpecContent(
+                "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/1/content", accessToken);
+
+        assertThat(content).isEqualTo("openapi: 3.0.2");
+        mockServerClient.verify(requestDefinition);
+
+    }
+
+    @Test
+    void readExistingSpecContentEmptyGzipBodyReturnsEmptyContent() {
+
+        String accessToken = "You shall pass!";
+        HttpRequest requestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/1/content")
+                .withHeader("Accept-Encoding", "gzip");
+        mockServerClient
+                .when(requestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withHeader("Content-Encoding", "gzip"));
+
+        String content = client.readExistingSpecContent(
+                "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/1/content", accessToken);
+
+        assertThat(content).isEmpty();
+        mockServerClient.verify(requestDefinition);
+
+    }
+
+    @Test
+    void getExistingSpecsFolderThrottledRetriedSuccessfully() {
+
+        String accessToken = "You shall pass!";
+        client.setSpecFolderUrl("http://127.0.0.1:8787/dapi/api/organizations/organization/specs/folder/home");
+        client.setRetryPolicy(new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(10)));
+        HttpRequest requestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/folder/home")
+                .withHeader("Authorization", "Bearer " + accessToken);
+        mockServerClient
+                .when(requestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(429)
+                        .withHeader("Retry-After", "0"));
+        mockServerClient
+                .when(requestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withBody("{ \"contents\": [ { \"name\": \"spec1\" } ] }"));
+
+        Map<String, Object> existingSpecsFolder = client.getExistingSpecsFolder(accessToken);
+
+        assertThat((List<?>) existingSpecsFolder.get("contents")).hasSize(1);
+        mockServerClient.verify(requestDefinition, VerificationTimes.exactly(2));
+
+    }
+
+    @Test
+    void publishNewApiSpecDocServiceUnavailableNotRetried() {
+
+        String accessToken = "You shall pass!";
+        client.setSpecDocUrl("http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc");
+        client.setRetryPolicy(new RetryPolicy(2, Duration.ofMillis(1), Duration.ofMillis(10)));
+        HttpRequest requestDefinition = request()
+                .withMethod("POST")
+                .withPath("/dapi/api/organizations/organization/specs/doc")
+                .withHeader("Authorization", "Bearer " + accessToken);
+        mockServerClient
+                .when(requestDefinition)
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE));
+
+        assertThrows(RuntimeException.class, () -> client.publishNewApiSpecDoc("spec1", "folder1", accessToken));
+
+        mockServerClient.verify(requestDefinition, VerificationTimes.exactly(1));
+
+    }
+
     @Test
     void publishNewApiSpecDocSuccessfully() {
 
@@ -175,12 +300,13 @@ class ApigeeHttpClientTest {
     }
 
     @Test
-    void publishApiSpecContentSpecUnchangedPublishNotAttempted() {
+    void publishApiSpecContentSpecUnchangedPublishNotAttempted() throws IOException {
 
         String specName = "spec1";
         String specContent = "Some OpenAPI content here...";
         String accessToken = "You shall pass!";
         String docId = "docId";
+        File specFile = writeSpecFile(specContent);
         client.setSpecContentUrlTemplate(
                 "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
         HttpRequest getRequestDefinition = request()
@@ -193,7 +319,7 @@ class ApigeeHttpClientTest {
                         .withStatusCode(HttpStatus.SC_OK)
                         .withBody(specContent));
 
-        boolean published = client.publishApiSpecContent(specName, specContent, docId, accessToken);
+        boolean published = client.publishApiSpecContent(specName, specFile, docId, accessToken);
 
         assertThat(published).isFalse();
         mockServerClient.verify(getRequestDefinition);
@@ -201,12 +327,13 @@ class ApigeeHttpClientTest {
     }
 
     @Test
-    void publishApiSpecContentFetchingSpecContentFailedExceptionThrown() {
+    void publishApiSpecContentFetchingSpecContentFailedExceptionThrown() throws IOException {
 
         String specName = "spec1";
         String specContent = "Some OpenAPI content here...";
         String accessToken = "You shall pass!";
         String docId = "docId";
+        File specFile = writeSpecFile(specContent);
         client.setSpecContentUrlTemplate(
                 "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
         HttpRequest getRequestDefinition = request()
@@ -219,19 +346,20 @@ class ApigeeHttpClientTest {
                         .withStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR));
 
         assertThrows(RuntimeException.class,
-                () -> client.publishApiSpecContent(specName, specContent, docId, accessToken));
+                () -> client.publishApiSpecContent(specName, specFile, docId, accessToken));
 
         mockServerClient.verify(getRequestDefinition);
 
     }
 
     @Test
-    void publishApiSpecContentSpecModifiedPublishSuccessful() {
+    void publishApiSpecContentSpecModifiedPublishSuccessful() throws IOException {
 
         String specName = "spec1";
         String specContent = "Some OpenAPI content here...";
         String accessToken = "You shall pass!";
         String docId = "docId";
+        File specFile = writeSpecFile(specContent);
         client.setSpecContentUrlTemplate(
                 "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
         HttpRequest putRequestDefinition = request()
@@ -253,7 +381,7 @@ class ApigeeHttpClientTest {
                         .withStatusCode(HttpStatus.SC_OK)
                         .withBody(specContent + "change"));
 
-        boolean published = client.publishApiSpecContent(specName, specContent, docId, accessToken);
+        boolean published = client.publishApiSpecContent(specName, specFile, docId, accessToken);
 
         assertThat(published).isTrue();
         mockServerClient.verify(putRequestDefinition);
@@ -262,12 +390,13 @@ class ApigeeHttpClientTest {
     }
 
     @Test
-    void publishApiSpecContentSpecModifiedNonSuccessStatusReturnedExceptionThrown() {
+    void publishApiSpecContentSpecModifiedNonSuccessStatusReturnedExceptionThrown() throws IOException {
 
         String specName = "spec1";
         String specContent = "Some OpenAPI content here...";
         String accessToken = "You shall pass!";
         String docId = "docId";
+        File specFile = writeSpecFile(specContent);
         client.setSpecContentUrlTemplate(
                 "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
         HttpRequest putRequestDefinition = request()
@@ -290,13 +419,132 @@ class ApigeeHttpClientTest {
                         .withBody(specContent + "change"));
 
         assertThrows(RuntimeException.class,
-                () -> client.publishApiSpecContent(specName, specContent, docId, accessToken));
+                () -> client.publishApiSpecContent(specName, specFile, docId, accessToken));
 
         mockServerClient.verify(putRequestDefinition);
         mockServerClient.verify(getRequestDefinition);
 
     }
 
+    @Test
+    void publishApiSpecContentNoExistingContentPublishSuccessful() throws IOException {
+
+        String specName = "spec1";
+        String specContent = "Some OpenAPI content here...";
+        String accessToken = "You shall pass!";
+        String docId = "docId";
+        File specFile = writeSpecFile(specContent);
+        client.setSpecContentUrlTemplate(
+                "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
+        HttpRequest putRequestDefinition = request()
+                .withMethod("PUT")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withBody(specContent)
+                .withHeader("Authorization", "Bearer " + accessToken);
+        mockServerClient
+                .when(putRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK));
+        HttpRequest getRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withHeader("Authorization", "Bearer " + accessToken);
+        mockServerClient
+                .when(getRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_NO_CONTENT));
+
+        boolean published = client.publishApiSpecContent(specName, specFile, docId, accessToken);
+
+        assertThat(published).isTrue();
+        mockServerClient.verify(putRequestDefinition);
+        mockServerClient.verify(getRequestDefinition);
+
+    }
+
+    @Test
+    void publishApiSpecContentCompressedUploadRejectedUploadedUncompressed() throws IOException {
+
+        String specName = "spec1";
+        String specContent = "Some OpenAPI content here...";
+        String accessToken = "You shall pass!";
+        String docId = "docId";
+        File specFile = writeSpecFile(specContent);
+        client.setCompressUploads(true);
+        client.setSpecContentUrlTemplate(
+                "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
+        HttpRequest compressedPutRequestDefinition = request()
+                .withMethod("PUT")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withHeader("Content-Encoding", "gzip");
+        mockServerClient
+                .when(compressedPutRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE));
+        HttpRequest putRequestDefinition = request()
+                .withMethod("PUT")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withBody(specContent);
+        mockServerClient
+                .when(putRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK));
+        HttpRequest getRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withHeader("Accept-Encoding", "gzip");
+        mockServerClient
+                .when(getRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_NO_CONTENT));
+
+        boolean published = client.publishApiSpecContent(specName, specFile, docId, accessToken);
+
+        assertThat(published).isTrue();
+        mockServerClient.verify(compressedPutRequestDefinition, VerificationTimes.exactly(1));
+        mockServerClient.verify(putRequestDefinition, VerificationTimes.exactly(1));
+
+    }
+
+    @Test
+    void publishApiSpecContentNotModifiedServedFromResponseCache() throws IOException {
+
+        String specName = "spec1";
+        String specContent = "Some OpenAPI content here...";
+        String accessToken = "You shall pass!";
+        String docId = "docId";
+        File specFile = writeSpecFile(specContent);
+        client.setResponseCache(new HttpResponseCache(Files.createTempDirectory("http-cache").toFile(), "alice"));
+        client.setSpecContentUrlTemplate(
+                "http://127.0.0.1:8787/dapi/api/organizations/organization/specs/doc/<id>/content");
+        HttpRequest conditionalRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content")
+                .withHeader("If-None-Match", "\"v1\"");
+        mockServerClient
+                .when(conditionalRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_NOT_MODIFIED));
+        HttpRequest getRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/dapi/api/organizations/organization/specs/doc/" + docId + "/content");
+        mockServerClient
+                .when(getRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(specContent));
+
+        boolean firstPublished = client.publishApiSpecContent(specName, specFile, docId, accessToken);
+        boolean secondPublished = client.publishApiSpecContent(specName, specFile, docId, accessToken);
+
+        assertThat(firstPublished).isFalse();
+        assertThat(secondPublished).isFalse();
+        mockServerClient.verify(conditionalRequestDefinition, VerificationTimes.exactly(1));
+        mockServerClient.verify(getRequestDefinition, VerificationTimes.exactly(2));
+
+    }
+
     @Test
     void getExistingApiDocsSuccessfully() {
 
@@ -322,6 +570,38 @@ class ApigeeHttpClientTest {
 
     }
 
+    @Test
+    void getExistingApiDocsPagedAllPagesRead() {
+
+        String accessToken = "You shall pass!";
+        client.setApiDocsUrl("http://localhost:8787/portals/api/sites/portal/apidocs");
+        client.setPortalName("portal");
+        HttpRequest secondPageRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/portals/api/sites/portal/apidocs")
+                .withQueryStringParameter("pageToken", "page2");
+        mockServerClient
+                .when(secondPageRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withBody("{ \"data\": [ { \"id\": 2, \"title\": \"spec2\" } ] }"));
+        HttpRequest firstPageRequestDefinition = request()
+                .withMethod("GET")
+                .withPath("/portals/api/sites/portal/apidocs");
+        mockServerClient
+                .when(firstPageRequestDefinition, exactly(1))
+                .respond(response()
+                        .withStatusCode(HttpStatus.SC_OK)
+                        .withBody("{ \"data\": [ { \"id\": 1, \"title\": \"spec1\", \"description\": \"Spec 1\" } ], "
+                                + "\"nextPageToken\": \"page2\" }"));
+
+        List<Map<String, Object>> apiDocs = client.getExistingApiDocs(accessToken);
+
+        assertThat(apiDocs).containsExactly(Map.of("id", "1", "title", "spec1"), Map.of("id", "2", "title", "spec2"));
+        mockServerClient.verify(secondPageRequestDefinition, VerificationTimes.exactly(1));
+
+    }
+
     @Test
     void getExistingApiDocsUrlMissingEmptyListReturned() {
 
@@ -402,4 +682,10 @@ class ApigeeHttpClientTest {
 
     }
 
+    private static File writeSpecFile(String specContent) throws IOException {
+        File specFile = Files.createTempFile("spec", ".yaml").toFile();
+        Files.write(specFile.toPath(), specContent.getBytes(StandardCharsets.UTF_8));
+        return specFile;
+    }
+
 }
@@ -0,0 +1,186 @@
+package io.everon;
+
+import groovy.json.JsonSlurper;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Functional tests of whole publish runs against an {@link ApigeeSimulator}. The publish rate is only logged.
+ */
+class ApigeePublishEndToEndTest {
+
+    private static final Logger LOGGER = Logging.getLogger(ApigeePublishEndToEndTest.class);
+    private static final String ORGANIZATION = "organization";
+    private static final String PORTAL = "portal";
+    private static final int SPEC_COUNT = 200;
+
+    private ApigeeSimulator simulator;
+    private Path projectDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        simulator = new ApigeeSimulator();
+        projectDir = Files.createTempDirectory("apigee-e2e");
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.close();
+    }
+
+    @Test
+    @DisplayName("New and existing specs of a large catalog are published with one snapshot per API doc")
+    void testPublishLargeCatalog() throws IOException {
+        simulator.addSpecs(ORGANIZATION, PORTAL, "spec-", SPEC_COUNT / 2);
+        List<String> specFiles = writeSpecs(SPEC_COUNT, "v2");
+
+        Map<String, Object> totals = publish(specFiles);
+
+        assertPublished(SPEC_COUNT, "v2");
+        assertThat(simulator.requestCount(ApigeeSimulator.CREATE_DOC)).isEqualTo(SPEC_COUNT / 2);
+        assertThat(simulator.requestCount(ApigeeSimulator.PUT_CONTENT)).isEqualTo(SPEC_COUNT);
+        assertThat(simulator.requestCount(ApigeeSimulator.SNAPSHOT)).isEqualTo(SPEC_COUNT / 2);
+        assertThat(simulator.requestCount(ApigeeSimulator.LOGIN)).isEqualTo(1);
+        assertThat((Integer) totals.get("failed")).isZero();
+    }
+
+    @Test
+    @DisplayName("Publishing survives latency and throttling")
+    void testPublishWithLatencyAndThrottling() throws IOException {
+        simulator.withLatency(Duration.ofMillis(10)).withThrottleRate(0.2);
+        List<String> specFiles = writeSpecs(SPEC_COUNT / 2, "v1");
+
+        Map<String, Object> totals = publish(specFiles);
+
+        assertPublished(SPEC_COUNT / 2, "v1");
+        assertThat(simulator.throttledRequests()).isPositive();
+        assertThat((Integer) totals.get("retries")).isEqualTo(simulator.throttledRequests());
+        assertThat((Integer) totals.get("failed")).isZero();
+    }
+
+    @Test
+    @DisplayName("Publishing fails once a throttled request runs out of retries")
+    void testPublishRetriesExhausted() throws IOException {
+        simulator.withThrottleRate(1.0);
+        List<String> specFiles = writeSpecs(1, "v1");
+
+        assertThrows(RuntimeException.class, () -> publish(specFiles, 2));
+
+        assertThat(simulator.throttledRequests()).isEqualTo(3);
+        assertThat(simulator.requestCount(ApigeeSimulator.LOGIN)).isZero();
+        assertThat(simulator.specCount(ORGANIZATION)).isZero();
+    }
+
+    @Test
+    @DisplayName("Listings served in pages are read completely")
+    void testPublishWithPagedListings() throws IOException {
+        simulator.withPageSize(50);
+        simulator.addSpecs(ORGANIZATION, PORTAL, "spec-", SPEC_COUNT);
+        List<String> specFiles = writeSpecs(SPEC_COUNT, "v2");
+
+        publish(specFiles);
+
+        assertPublished(SPEC_COUNT, "v2");
+        assertThat(simulator.requestCount(ApigeeSimulator.CREATE_DOC)).isZero();
+        assertThat(simulator.requestCount(ApigeeSimulator.SPECS_FOLDER)).isEqualTo(SPEC_COUNT / 50);
+    }
+
+    @Test
+    @DisplayName("A second build uploads nothing when no spec changed")
+    void testRepublishUnchanged() throws IOException {
+        List<String> specFiles = writeSpecs(SPEC_COUNT, "v1");
+        publish(specFiles);
+        simulator.resetCounts();
+
+        publish(specFiles);
+
+        assertThat(simulator.specCount(ORGANIZATION)).isEqualTo(SPEC_COUNT);
+        assertThat(simulator.requestCount(ApigeeSimulator.CREATE_DOC)).isZero();
+        assertThat(simulator.requestCount(ApigeeSimulator.PUT_CONTENT)).isZero();
+        assertThat(simulator.requestCount(ApigeeSimulator.SNAPSHOT)).isZero();
+    }
+
+    private Map<String, Object> publish(List<String> specFiles) {
+        return publish(specFiles, RetryPolicy.DEFAULT_MAX_RETRIES);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> publish(List<String> specFiles, int maxRetries) {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        project.getPluginManager().apply("io.everon.apigee-publish");
+        ApigeePublishExtension extension = project.getExtensions().getByType(ApigeePublishExtension.class);
+        extension.getBaseUrl().set(simulator.getBaseUrl());
+        extension.getOrganizationName().set(ORGANIZATION);
+        extension.getPortalName().set(PORTAL);
+        extension.getUsername().set("username");
+        extension.getPassword().set("password");
+        extension.getLocalSpecFilePaths().set(specFiles);
+        extension.getCacheToken().set(false);
+        extension.getRequestsPerSecond().set(0);
+        extension.getParallelism().set(8);
+        extension.getMaxRetries().set(maxRetries);
+        ApigeePublishTask task = (ApigeePublishTask) project.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
+
+        long start = System.nanoTime();
+        task.publish();
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<String, Object> report = (Map<String, Object>) new JsonSlurper()
+                .parse(task.getReportFile().get().getAsFile());
+        Map<String, Object> totals = (Map<String, Object>) report.get("totals");
+        LOGGER.lifecycle("Published {} specs in {} ms ({} specs/s), {} requests, {} retries",
+                specFiles.size(), duration.toMillis(), specFiles.size() * 1000L / Math.max(1, duration.toMillis()),
+                totals.get("requests"), totals.get("retries"));
+        return totals;
+    }
+
+    private List<String> writeSpecs(int count, String version) throws IOException {
+        Path specsDir = Files.createDirectories(projectDir.resolve("specs"));
+        List<String> specFiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File specFile = specsDir.resolve("spec-" + i + ".yaml").toFile();
+            Files.write(specFile.toPath(), spec("spec-" + i, version).getBytes(StandardCharsets.UTF_8));
+            specFiles.add(specFile.getPath());
+        }
+        return specFiles;
+    }
+
+    private void assertPublished(int count, String version) {
+        for (int i = 0; i < count; i++) {
+            assertThat(simulator.specContent(ORGANIZATION, "spec-" + i)).isEqualTo(spec("spec-" + i, version));
+        }
+    }
+
+    private static String spec(String title, String version) {
+        return "openapi: 3.0.2\n"
+                + "info:\n"
+                + "  title: " + title + "\n"
+                + "  version: " + version + "\n"
+                + "paths:\n"
+                + "  /" + title + ":\n"
+                + "    get:\n"
+                + "      responses:\n"
+                + "        '200':\n"
+                + "          description: OK\n";
+    }
+
+}
@@ -8,9 +8,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedHashMap;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -38,11 +40,12 @@ class ApigeePublishPluginTest {
     }
 
     @Test
-    @DisplayName("Read file contents")
-    void testReadFile() {
-        String[] filePaths = new String[]{getClass().getResource("test.yaml").getPath()};
-        LinkedHashMap<String, String> contents = (LinkedHashMap<String, String>) ApigeePublishPlugin.readFileContents(filePaths);
-        assertThat(contents.get("Test API V1")).isEqualTo(SPEC_CONTENT);
+    @DisplayName("Read spec files")
+    void testReadSpecFiles() {
+        String filePath = getClass().getResource("test.yaml").getPath();
+        Map<String, SpecFile> specFiles = ApigeePublishPlugin.readSpecFiles(new String[]{filePath});
+        assertThat(specFiles.get("Test API V1").getFile()).isEqualTo(new File(filePath));
+        assertThat(specFiles.get("Test API V1").getHash()).isEqualTo(CacheFiles.sha256(SPEC_CONTENT));
     }
 
     @Test
@@ -63,66 +66,201 @@ class ApigeePublishPluginTest {
     @Test
     @DisplayName("Overwrite system properties")
     void testOverwriteSystemProperties() {
-        ApigeePublishExtension extension = new ApigeePublishExtension();
-        extension.setUsername("username");
-        extension.setPassword("password");
+        Project project = ProjectBuilder.builder().build();
+        project.getPluginManager().apply("io.everon.apigee-publish");
+        ApigeePublishExtension extension = project.getExtensions().getByType(ApigeePublishExtension.class);
+        extension.getUsername().set("username");
+        extension.getPassword().set("password");
         System.setProperty("APIGEE_USERNAME", "newUsername");
         System.setProperty("APIGEE_PASSWORD", "newPassword");
         System.setProperty("APIGEE_UNKNOWN", "unknown");
         System.setProperty("DUMMY", "dummyValue");
 
-        ApigeePublishPlugin.overwriteExtensionWithSystemProperties(extension);
+        try {
+            ApigeePublishTask task = (ApigeePublishTask) project.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
 
-        assertThat(extension.getUsername()).isEqualTo("newUsername");
-        assertThat(extension.getPassword()).isEqualTo("newPassword");
+            assertThat(task.getUsername().get()).isEqualTo("newUsername");
+            assertThat(task.getPassword().get()).isEqualTo("newPassword");
+        } finally {
+            System.clearProperty("APIGEE_USERNAME");
+            System.clearProperty("APIGEE_PASSWORD");
+            System.clearProperty("APIGEE_UNKNOWN");
+            System.clearProperty("DUMMY");
+        }
     }
 
     @Test
-    @DisplayName("Publish docs test no docs")
-    void testPublishDocsNoDocs() {
-        List<Map<String, Object>> existingApiDocs = List.of(Map.of("title", "test"));
-        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+    @DisplayName("Task is configured lazily from the extension")
+    void testTaskConfiguredFromExtension() {
+        Project project = ProjectBuilder.builder().build();
+        project.getPluginManager().apply("io.everon.apigee-publish");
+        ApigeePublishTask task = (ApigeePublishTask) project.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
+        ApigeePublishExtension extension = project.getExtensions().getByType(ApigeePublishExtension.class);
 
-        ApigeePublishPlugin.publishDoc(client, existingApiDocs, APIGEE_TOKEN, "test2");
+        extension.getOrganizationName().set("organization");
+        extension.getPortalName().set("portal");
+        extension.getLocalSpecFilePaths().set(List.of("test.yaml"));
+        extension.getBaseUrl().set("http://localhost:8080");
 
-        verifyZeroInteractions(client);
+        assertThat(task.getOrganizationName().get()).isEqualTo("organization");
+        assertThat(task.getPortalName().get()).isEqualTo("portal");
+        assertThat(task.getBaseUrl().get()).isEqualTo("http://localhost:8080");
+        assertThat(task.getLocalSpecFiles().getSingleFile()).isEqualTo(project.file("test.yaml"));
+        assertThat(task.getParallelism().get()).isEqualTo(4);
+        assertThat(task.getVerifyRemote().get()).isFalse();
+        assertThat(task.getBundleExternalRefs().get()).isFalse();
+        assertThat(task.getMarkerFile().get().getAsFile().getName()).isEqualTo("apigeePublish.marker");
+        assertThat(task.getReportFile().get().getAsFile().getName()).isEqualTo("publish-report.json");
+        assertThat(task.getTokenCacheDir().get().getAsFile()).isEqualTo(
+                new File(project.getGradle().getGradleUserHomeDir(), ApigeePublishPlugin.TOKEN_CACHE_DIR_PATH));
     }
 
     @Test
-    @DisplayName("Publish docs test")
-    void testPublishDocsNo() {
-        List<Map<String, Object>> existingApiDocs = List.of(Map.of("title", "test", "id", "123"));
-        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+    @DisplayName("Targets inherit the credentials configured on the extension")
+    void testTargetsConfiguredFromExtension() {
+        Project project = ProjectBuilder.builder().build();
+        project.getPluginManager().apply("io.everon.apigee-publish");
+        ApigeePublishTask task = (ApigeePublishTask) project.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
+        ApigeePublishExtension extension = project.getExtensions().getByType(ApigeePublishExtension.class);
+
+        extension.getUsername().set("username");
+        extension.getPassword().set("password");
+        extension.getTargets().create("dev", target -> target.getOrganizationName().set("dev-organization"));
+        extension.getTargets().create("prod", target -> {
+            target.getOrganizationName().set("prod-organization");
+            target.getPortalName().set("prod-portal");
+            target.getUsername().set("prod-username");
+        });
+
+        List<PublishTarget> targets = task.getPublishTargets();
+        assertThat(targets).hasSize(2);
+        assertThat(targets.get(0).getOrganizationName()).isEqualTo("dev-organization");
+        assertThat(targets.get(0).getUsername()).isEqualTo("username");
+        assertThat(targets.get(1).getPortalName()).isEqualTo("prod-portal");
+        assertThat(targets.get(1).getUsername()).isEqualTo("prod-username");
+        assertThat(targets.get(1).getPassword()).isEqualTo("password");
+        assertThat(task.getTargets().get()).extracting(PublishTarget::getPassword).containsOnlyNulls();
+    }
+
+    @Test
+    @DisplayName("Watch task is configured from the extension and skips snapshots by default")
+    void testWatchTaskConfiguredFromExtension() {
+        Project project = ProjectBuilder.builder().build();
+        project.getPluginManager().apply("io.everon.apigee-publish");
+        ApigeeWatchTask task = (ApigeeWatchTask) project.getTasks().getByName(ApigeePublishPlugin.WATCH_TASK_NAME);
+        ApigeePublishExtension extension = project.getExtensions().getByType(ApigeePublishExtension.class);
+
+        extension.getOrganizationName().set("organization");
+
+        assertThat(task.getOrganizationName().get()).isEqualTo("organization");
+        assertThat(task.getSnapshots().get()).isFalse();
+        assertThat(task.getDebounce().get()).isEqualTo(Duration.ofMillis(500));
+        assertThat(task.getMarkerFile().get().getAsFile().getName()).isEqualTo("apigeeWatch.marker");
+    }
+
+    @Test
+    @DisplayName("Publish tasks of all projects share the Apigee session")
+    void testSessionServiceShared() {
+        Project root = ProjectBuilder.builder().build();
+        Project child = ProjectBuilder.builder().withParent(root).withName("child").build();
+        root.getPluginManager().apply("io.everon.apigee-publish");
+        child.getPluginManager().apply("io.everon.apigee-publish");
+
+        ApigeePublishTask rootTask = (ApigeePublishTask) root.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
+        ApigeePublishTask childTask = (ApigeePublishTask) child.getTasks().getByName(ApigeePublishPlugin.TASK_NAME);
+
+        assertThat(rootTask.getSessionService().get()).isSameAs(childTask.getSessionService().get());
+    }
 
-        ApigeePublishPlugin.publishDoc(client, existingApiDocs, APIGEE_TOKEN, "test");
+    @Test
+    @DisplayName("Find api doc id without api doc")
+    void testFindApiDocIdNoDocs() {
+        List<Map<String, Object>> existingApiDocs = List.of(Map.of("title", "test"));
+
+        assertThat(ApigeePublishPlugin.findApiDocId(catalog(List.of(), existingApiDocs), "test2")).isNull();
+    }
+
+    @Test
+    @DisplayName("Find api doc id")
+    void testFindApiDocId() {
+        List<Map<String, Object>> existingApiDocs = List.of(Map.of("title", "test", "id", "123"));
 
-        verify(client).publishApiDocSnapshot("123", APIGEE_TOKEN);
+        assertThat(ApigeePublishPlugin.findApiDocId(catalog(List.of(), existingApiDocs), "test")).isEqualTo("123");
     }
 
     @Test
     @DisplayName("Publish new specs test")
-    void testNewPublishSpecs() {
+    void testNewPublishSpecs() throws IOException {
         List<Map<String, Object>> existingApiSpec = List.of(Map.of("title", "test", "id", "123"));
-        Map<String, Object> newApiSpec = Map.of(SPEC_NAME, SPEC_CONTENT);
+        Map<String, SpecFile> newApiSpec = specFiles();
         String docId = "321";
         ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
         when(client.publishNewApiSpecDoc(SPEC_NAME, "folderId", APIGEE_TOKEN)).thenReturn(docId);
+        RemoteCatalog catalog = catalog(existingApiSpec, List.of());
 
-        ApigeePublishPlugin.publishSpec(client, existingApiSpec, "spec", APIGEE_TOKEN, newApiSpec, "folderId");
+        ApigeePublishPlugin.publishSpec(client, catalog, "spec", APIGEE_TOKEN, newApiSpec);
 
-        verify(client).publishApiSpecContent(SPEC_NAME, SPEC_CONTENT, docId, APIGEE_TOKEN);
+        verify(client).publishApiSpecContent(SPEC_NAME, newApiSpec.get(SPEC_NAME).getFile(), docId, APIGEE_TOKEN);
+        assertThat(catalog.findSpec(SPEC_NAME).getId()).isEqualTo(docId);
     }
 
     @Test
     @DisplayName("Publish existing specs test")
-    void testExistingPublishSpecs() {
+    void testExistingPublishSpecs() throws IOException {
         List<Map<String, Object>> existingApiSpec = List.of(Map.of("title", "test", "id", "123", "name", "spec"));
-        Map<String, Object> newApiSpec = Map.of(SPEC_NAME, SPEC_CONTENT);
+        Map<String, SpecFile> newApiSpec = specFiles();
         ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
 
-        ApigeePublishPlugin.publishSpec(client, existingApiSpec, "spec", APIGEE_TOKEN, newApiSpec, "folderId");
+        ApigeePublishPlugin.publishSpec(client, catalog(existingApiSpec, List.of()), "spec", APIGEE_TOKEN, newApiSpec);
+
+        verify(client).publishApiSpecContent(SPEC_NAME, newApiSpec.get(SPEC_NAME).getFile(), "123", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("Publish existing specs test unchanged since last publish")
+    void testExistingPublishSpecsUnchangedInManifest() throws IOException {
+        List<Map<String, Object>> existingApiSpec = List.of(Map.of("title", "test", "id", "123", "name", "spec"));
+        Map<String, SpecFile> newApiSpec = specFiles();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        File manifestFile = Files.createTempDirectory("apigee").resolve("publish-manifest.json").toFile();
+        PublishManifest manifest = new PublishManifest(manifestFile);
+        manifest.record("organization", "123", newApiSpec.get(SPEC_NAME).getHash());
+        manifest.save();
+
+        boolean published = (boolean) ApigeePublishPlugin.publishSpec(client, catalog(existingApiSpec, List.of()), "spec",
+                APIGEE_TOKEN, newApiSpec, PublishManifest.load(manifestFile), false);
+
+        assertThat(published).isFalse();
+        verify(client, never()).publishApiSpecContent(anyString(), any(File.class), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Publish existing specs test verify remote ignores manifest")
+    void testExistingPublishSpecsVerifyRemote() throws IOException {
+        List<Map<String, Object>> existingApiSpec = List.of(Map.of("title", "test", "id", "123", "name", "spec"));
+        Map<String, SpecFile> newApiSpec = specFiles();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        PublishManifest manifest = new PublishManifest(
+                Files.createTempDirectory("apigee").resolve("publish-manifest.json").toFile());
+        manifest.record("organization", "123", newApiSpec.get(SPEC_NAME).getHash());
+
+        ApigeePublishPlugin.publishSpec(client, catalog(existingApiSpec, List.of()), "spec",
+                APIGEE_TOKEN, newApiSpec, manifest, true);
+
+        verify(client).publishApiSpecContent(SPEC_NAME, newApiSpec.get(SPEC_NAME).getFile(), "123", APIGEE_TOKEN);
+    }
+
+    private static Map<String, SpecFile> specFiles() throws IOException {
+        File specFile = Files.createTempFile("spec", ".yaml").toFile();
+        Files.write(specFile.toPath(), SPEC_CONTENT.getBytes(StandardCharsets.UTF_8));
+        return Map.of(SPEC_NAME, new SpecFile(SPEC_NAME, specFile));
+    }
 
-        verify(client).publishApiSpecContent(SPEC_NAME, SPEC_CONTENT, "123", APIGEE_TOKEN);
+    private static RemoteCatalog catalog(List<Map<String, Object>> existingApiSpecs,
+                                         List<Map<String, Object>> existingApiDocs) {
+        return RemoteCatalog.from(Map.of("id", "folderId", "contents", existingApiSpecs), existingApiDocs);
     }
 
 }
@@ -0,0 +1,100 @@
+package io.everon;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApigeeSessionServiceTest {
+
+    private static final String APIGEE_TOKEN = "token";
+
+    @Test
+    @DisplayName("Token and catalog are obtained once per build")
+    void testTokenAndCatalogShared() {
+        ApigeeSessionService session = session();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getLoginUrl()).thenReturn("https://login");
+        when(client.getSpecFolderUrl()).thenReturn("https://specs");
+        when(client.getApiDocsUrl()).thenReturn("https://apidocs");
+        ApigeeToken apigeeToken = new ApigeeToken();
+        apigeeToken.setAccessToken(APIGEE_TOKEN);
+        apigeeToken.setExpiresAt(System.currentTimeMillis() + 3_600_000);
+        when(client.obtainApigeeToken("username", "password")).thenReturn(apigeeToken);
+        when(client.getExistingSpecsFolder(APIGEE_TOKEN)).thenReturn(Map.of("id", "folderId", "contents", List.of()));
+        when(client.getExistingApiDocs(APIGEE_TOKEN)).thenReturn(List.of());
+
+        for (int i = 0; i < 2; i++) {
+            String token = session.obtainAccessToken(client, "username", "password", null);
+            assertThat(session.catalog(client, token).getFolderId()).isEqualTo("folderId");
+        }
+
+        verify(client, times(1)).obtainApigeeToken("username", "password");
+        verify(client, times(1)).getExistingSpecsFolder(APIGEE_TOKEN);
+        verify(client, times(1)).getExistingApiDocs(APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("Tokens are not shared between different credentials")
+    void testTokenNotSharedBetweenPasswords() {
+        ApigeeSessionService session = session();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getLoginUrl()).thenReturn("https://login");
+        ApigeeToken apigeeToken = new ApigeeToken();
+        apigeeToken.setAccessToken(APIGEE_TOKEN);
+        apigeeToken.setExpiresAt(System.currentTimeMillis() + 3_600_000);
+        when(client.obtainApigeeToken("username", "password")).thenReturn(apigeeToken);
+        when(client.obtainApigeeToken("username", "wrong")).thenThrow(new RuntimeException("Response code 401 received."));
+
+        session.obtainAccessToken(client, "username", "password", null);
+
+        assertThrows(RuntimeException.class, () -> session.obtainAccessToken(client, "username", "wrong", null));
+    }
+
+    @Test
+    @DisplayName("A spec doc is created once per organization, whatever the catalog")
+    void testSpecDocCreatedOncePerOrganization() {
+        ApigeeSessionService session = session();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        when(client.publishNewApiSpecDoc("spec", "folderId", APIGEE_TOKEN)).thenReturn("1");
+        RemoteCatalog portalCatalog = RemoteCatalog.from(Map.of("id", "folderId", "contents", List.of()), List.of());
+        RemoteCatalog otherPortalCatalog = RemoteCatalog.from(Map.of("id", "folderId", "contents", List.of()), List.of());
+
+        List<String> docIds = List.of(portalCatalog, otherPortalCatalog).parallelStream()
+                .map(catalog -> session.obtainSpecDocId(client, catalog, "spec", APIGEE_TOKEN))
+                .collect(Collectors.toList());
+
+        assertThat(docIds).containsExactly("1", "1");
+        assertThat(otherPortalCatalog.findSpec("spec").getId()).isEqualTo("1");
+        verify(client, times(1)).publishNewApiSpecDoc("spec", "folderId", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("Request budget is shared per organization")
+    void testRequestBudgetShared() {
+        ApigeeSessionService session = session();
+
+        assertThat(session.requestBudget("organization", 10)).isSameAs(session.requestBudget("organization", 10));
+        assertThat(session.requestBudget("organization", 10)).isNotSameAs(session.requestBudget("other", 10));
+    }
+
+    private static ApigeeSessionService session() {
+        Project project = ProjectBuilder.builder().build();
+        return project.getGradle().getSharedServices()
+                .registerIfAbsent("apigeeSession", ApigeeSessionService.class, spec -> { })
+                .get();
+    }
+
+}
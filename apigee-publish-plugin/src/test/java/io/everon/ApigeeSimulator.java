@@ -0,0 +1,390 @@
+package io.everon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process fake of the Apigee endpoints used by the plugin, with optional latency, throttling and paging.
+ */
+final class ApigeeSimulator implements AutoCloseable {
+
+    static final String LOGIN = "login";
+    static final String SPECS_FOLDER = "specsFolder";
+    static final String CREATE_DOC = "createDoc";
+    static final String GET_CONTENT = "getContent";
+    static final String PUT_CONTENT = "putContent";
+    static final String API_DOCS = "apiDocs";
+    static final String SNAPSHOT = "snapshot";
+
+    static final long DEFAULT_THROTTLE_SEED = 42;
+
+    private static final Pattern SPECS_FOLDER_PATH = Pattern.compile("/dapi/api/organizations/([^/]+)/specs/folder/home");
+    private static final Pattern DOC_PATH = Pattern.compile("/dapi/api/organizations/([^/]+)/specs/doc");
+    private static final Pattern CONTENT_PATH = Pattern.compile("/dapi/api/organizations/([^/]+)/specs/doc/([^/]+)/content");
+    private static final Pattern API_DOCS_PATH = Pattern.compile("/portals/api/sites/([^/]+)/apidocs");
+    private static final Pattern SNAPSHOT_PATH = Pattern.compile("/portals/api/sites/([^/]+)/apidocs/([^/]+)/snapshot");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Organization> organizations = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> apiDocTitlesByPortal = new ConcurrentHashMap<>();
+    private final Set<String> accessTokens = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger throttledRequests = new AtomicInteger();
+    private final Map<String, Integer> consecutiveThrottles = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1000);
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile double throttleRate;
+    private volatile long throttleSeed = DEFAULT_THROTTLE_SEED;
+    private volatile int pageSize;
+
+    ApigeeSimulator() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    ApigeeSimulator withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Throttling is decided by a seeded random per request and attempt, so every run throttles the same requests.
+     */
+    ApigeeSimulator withThrottleRate(double throttleRate) {
+        return withThrottleRate(throttleRate, DEFAULT_THROTTLE_SEED);
+    }
+
+    ApigeeSimulator withThrottleRate(double throttleRate, long throttleSeed) {
+        this.throttleRate = throttleRate;
+        this.throttleSeed = throttleSeed;
+        return this;
+    }
+
+    ApigeeSimulator withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    void addSpecs(String organizationName, String portalName, String prefix, int count) {
+        Organization organization = organization(organizationName);
+        for (int i = 0; i < count; i++) {
+            Doc doc = organization.create(prefix + i, nextId.incrementAndGet());
+            doc.content = ("openapi: 3.0.2\ninfo:\n  title: " + doc.name + "\n").getBytes(StandardCharsets.UTF_8);
+            apiDocTitles(portalName).put(String.valueOf(nextId.incrementAndGet()), doc.name);
+        }
+    }
+
+    String specContent(String organizationName, String specName) {
+        return organization(organizationName).docs.values().stream()
+                .filter(doc -> doc.name.equals(specName) && doc.content != null)
+                .map(doc -> new String(doc.content, StandardCharsets.UTF_8))
+                .findFirst()
+                .orElse(null);
+    }
+
+    int specCount(String organizationName) {
+        return organization(organizationName).docs.size();
+    }
+
+    int requestCount(String endpoint) {
+        AtomicInteger count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    int throttledRequests() {
+        return throttledRequests.get();
+    }
+
+    void resetCounts() {
+        requestCounts.clear();
+        throttledRequests.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = readBody(exchange);
+            sleep(latency);
+            if (throttled(exchange, body)) {
+                throttledRequests.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                send(exchange, 429, "{\"error\": \"Too many requests\"}");
+                return;
+            }
+            route(exchange, body);
+        }
+    }
+
+    private void route(HttpExchange exchange, byte[] body) throws IOException {
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (method.equals("POST") && path.equals("/oauth/token")) {
+            login(exchange);
+            return;
+        }
+        if (!authorized(exchange)) {
+            send(exchange, 401, "{\"error\": \"Unauthorized\"}");
+            return;
+        }
+
+        Matcher matcher;
+        if (method.equals("GET") && (matcher = SPECS_FOLDER_PATH.matcher(path)).matches()) {
+            listSpecsFolder(exchange, organization(matcher.group(1)));
+        } else if (method.equals("POST") && (matcher = DOC_PATH.matcher(path)).matches()) {
+            createDoc(exchange, organization(matcher.group(1)), body);
+        } else if ((matcher = CONTENT_PATH.matcher(path)).matches()) {
+            Doc doc = organization(matcher.group(1)).docs.get(matcher.group(2));
+            if (doc == null) {
+                send(exchange, 404, "{\"error\": \"Not found\"}");
+            } else if (method.equals("GET")) {
+                getContent(exchange, doc);
+            } else {
+                putContent(exchange, doc, body);
+            }
+        } else if (method.equals("GET") && (matcher = API_DOCS_PATH.matcher(path)).matches()) {
+            listApiDocs(exchange, apiDocTitles(matcher.group(1)));
+        } else if (method.equals("PUT") && (matcher = SNAPSHOT_PATH.matcher(path)).matches()) {
+            count(SNAPSHOT);
+            boolean exists = apiDocTitles(matcher.group(1)).containsKey(matcher.group(2));
+            send(exchange, exists ? 200 : 404, exists ? "{}" : "{\"error\": \"Not found\"}");
+        } else {
+            send(exchange, 404, "{\"error\": \"Unknown endpoint\"}");
+        }
+
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        count(LOGIN);
+        String accessToken = "token-" + nextId.incrementAndGet();
+        accessTokens.add(accessToken);
+        send(exchange, 200, JsonOutput.toJson(Map.of(
+                "access_token", accessToken, "refresh_token", "refresh-" + accessToken, "expires_in", 1799)));
+    }
+
+    private void listSpecsFolder(HttpExchange exchange, Organization organization) throws IOException {
+        count(SPECS_FOLDER);
+        List<Map<String, Object>> contents = new ArrayList<>();
+        for (Doc doc : organization.docs.values()) {
+            contents.add(Map.of("id", doc.id, "name", doc.name, "kind", "Doc"));
+        }
+        Map<String, Object> page = page(exchange, "contents", contents);
+        page.put("id", organization.folderId);
+        send(exchange, 200, JsonOutput.toJson(page));
+    }
+
+    private void createDoc(HttpExchange exchange, Organization organization, byte[] body) throws IOException {
+        count(CREATE_DOC);
+        Map<?, ?> request = (Map<?, ?>) new JsonSlurper().parse(body);
+        if (!organization.folderId.equals(request.get("folder"))) {
+            send(exchange, 400, "{\"error\": \"Unknown folder\"}");
+            return;
+        }
+        Doc doc = organization.create((String) request.get("name"), nextId.incrementAndGet());
+        send(exchange, 200, JsonOutput.toJson(Map.of("id", doc.id, "name", doc.name, "kind", "Doc")));
+    }
+
+    private void getContent(HttpExchange exchange, Doc doc) throws IOException {
+        count(GET_CONTENT);
+        synchronized (doc) {
+            if (doc.content == null) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            String etag = "\"" + doc.id + "-" + doc.version + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            send(exchange, 200, doc.content);
+        }
+    }
+
+    private void putContent(HttpExchange exchange, Doc doc, byte[] body) throws IOException {
+        count(PUT_CONTENT);
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = input.readAllBytes();
+            }
+        }
+        synchronized (doc) {
+            doc.content = body;
+            doc.version++;
+        }
+        send(exchange, 200, "{}");
+    }
+
+    private void listApiDocs(HttpExchange exchange, Map<String, String> apiDocTitles) throws IOException {
+        count(API_DOCS);
+        List<Map<String, Object>> data = new ArrayList<>();
+        apiDocTitles.forEach((id, title) -> data.add(Map.of("id", Long.parseLong(id), "title", title)));
+        send(exchange, 200, JsonOutput.toJson(page(exchange, "data", data)));
+    }
+
+    private Map<String, Object> page(HttpExchange exchange, String itemsKey, List<Map<String, Object>> items) {
+        String query = exchange.getRequestURI().getQuery();
+        int offset = query != null && query.startsWith("pageToken=") ? Integer.parseInt(query.substring(10)) : 0;
+        int end = pageSize > 0 ? Math.min(items.size(), offset + pageSize) : items.size();
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put(itemsKey, items.subList(Math.min(offset, end), end));
+        if (end < items.size()) {
+            page.put("nextPageToken", String.valueOf(end));
+        }
+        return page;
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ")
+                && accessTokens.contains(authorization.substring(7));
+    }
+
+    private boolean throttled(HttpExchange exchange, byte[] body) {
+        if (throttleRate <= 0) {
+            return false;
+        }
+        String request = exchange.getRequestMethod() + " " + stableUri(exchange.getRequestURI()) + " "
+                + Arrays.hashCode(body);
+        synchronized (consecutiveThrottles) {
+            int throttles = consecutiveThrottles.getOrDefault(request, 0);
+            long seed = throttleSeed ^ (request.hashCode() * 0x9E3779B97F4A7C15L) ^ (throttles * 0xBF58476D1CE4E5B9L);
+            if (new Random(seed).nextDouble() < throttleRate) {
+                consecutiveThrottles.put(request, throttles + 1);
+                return true;
+            }
+            consecutiveThrottles.remove(request);
+            return false;
+        }
+    }
+
+    /**
+     * Doc ids depend on the order in which docs are created, so they are replaced by doc names.
+     */
+    private String stableUri(URI uri) {
+        Matcher matcher = CONTENT_PATH.matcher(uri.getPath());
+        if (matcher.matches()) {
+            Doc doc = organization(matcher.group(1)).docs.get(matcher.group(2));
+            return doc == null ? uri.toString() : uri.toString().replace("/" + doc.id + "/", "/" + doc.name + "/");
+        }
+        matcher = SNAPSHOT_PATH.matcher(uri.getPath());
+        if (matcher.matches()) {
+            String title = apiDocTitles(matcher.group(1)).get(matcher.group(2));
+            return title == null ? uri.toString() : uri.toString().replace("/" + matcher.group(2) + "/", "/" + title + "/");
+        }
+        return uri.toString();
+    }
+
+    private Organization organization(String organizationName) {
+        return organizations.computeIfAbsent(organizationName, name -> new Organization("folder-" + name));
+    }
+
+    private Map<String, String> apiDocTitles(String portalName) {
+        return apiDocTitlesByPortal.computeIfAbsent(portalName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private void count(String endpoint) {
+        requestCounts.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+        send(exchange, statusCode, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Organization {
+
+        private final String folderId;
+        private final Map<String, Doc> docs = new ConcurrentSkipListMap<>();
+
+        private Organization(String folderId) {
+            this.folderId = folderId;
+        }
+
+        private Doc create(String name, long id) {
+            Doc doc = new Doc(String.valueOf(id), name);
+            docs.put(doc.id, doc);
+            return doc;
+        }
+
+    }
+
+    private static final class Doc {
+
+        private final String id;
+        private final String name;
+        private byte[] content;
+        private int version;
+
+        private Doc(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+    }
+
+}
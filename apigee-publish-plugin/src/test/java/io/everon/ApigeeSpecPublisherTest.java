@@ -0,0 +1,200 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApigeeSpecPublisherTest {
+
+    private static final String APIGEE_TOKEN = "token";
+    private static final String FOLDER_ID = "folderId";
+
+    @Test
+    @DisplayName("Publish specs concurrently and report every spec")
+    void testPublishReportsEverySpec() throws IOException {
+        List<Map<String, Object>> existingApiSpecs = List.of(
+                Map.of("name", "spec1", "id", "1"),
+                Map.of("name", "spec2", "id", "2"),
+                Map.of("name", "spec3", "id", "3"));
+        Map<String, SpecFile> specFiles = specFiles("spec1", "spec2", "spec3");
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN)).thenReturn(true);
+        when(client.publishApiSpecContent("spec2", file(specFiles, "spec2"), "2", APIGEE_TOKEN)).thenReturn(false);
+        when(client.publishApiSpecContent("spec3", file(specFiles, "spec3"), "3", APIGEE_TOKEN))
+                .thenThrow(new RuntimeException("Response code 500 received."));
+
+        List<PublishResult> results = new ApigeeSpecPublisher(client, 2)
+                .publish(specFiles, RemoteCatalog.from(Map.of("id", FOLDER_ID, "contents", existingApiSpecs),
+                        List.of()), APIGEE_TOKEN);
+
+        assertThat(results).extracting(PublishResult::getSpecName).containsExactly("spec1", "spec2", "spec3");
+        assertThat(results).extracting(PublishResult::getStatus).containsExactly(
+                PublishResult.Status.PUBLISHED, PublishResult.Status.UNCHANGED, PublishResult.Status.FAILED);
+        verify(client).publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN);
+        verify(client).publishApiSpecContent("spec2", file(specFiles, "spec2"), "2", APIGEE_TOKEN);
+        verify(client).publishApiSpecContent("spec3", file(specFiles, "spec3"), "3", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("Publish api doc snapshots once per api doc after all specs are uploaded")
+    void testPublishSnapshotsDeduplicated() throws IOException {
+        List<Map<String, Object>> existingApiSpecs = List.of(
+                Map.of("name", "spec1", "id", "1"),
+                Map.of("name", "spec2", "id", "2"),
+                Map.of("name", "spec3", "id", "3"));
+        List<Map<String, Object>> existingApiDocs = List.of(
+                Map.of("title", "spec1", "id", "doc1"),
+                Map.of("title", "spec2", "id", "doc1"),
+                Map.of("title", "spec3", "id", "doc2"));
+        Map<String, SpecFile> specFiles = specFiles("spec1", "spec2", "spec3");
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getPortalName()).thenReturn("portal");
+        when(client.publishApiSpecContent(anyString(), any(File.class), anyString(), eq(APIGEE_TOKEN))).thenReturn(true);
+        when(client.publishApiDocSnapshot("doc2", APIGEE_TOKEN)).thenThrow(new RuntimeException("Response code 500 received."));
+
+        ApigeeSpecPublisher publisher = new ApigeeSpecPublisher(client, 2);
+        publisher.setSnapshotParallelism(2);
+        List<PublishResult> results = publisher.publish(specFiles,
+                RemoteCatalog.from(Map.of("id", FOLDER_ID, "contents", existingApiSpecs), existingApiDocs), APIGEE_TOKEN);
+
+        assertThat(results).extracting(PublishResult::getStatus).containsExactly(
+                PublishResult.Status.PUBLISHED, PublishResult.Status.PUBLISHED, PublishResult.Status.FAILED);
+        verify(client, times(1)).publishApiDocSnapshot("doc1", APIGEE_TOKEN);
+        verify(client, times(1)).publishApiDocSnapshot("doc2", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("A failed snapshot stays pending and is retried when the spec is unchanged")
+    void testFailedSnapshotRetried() throws IOException {
+        RemoteCatalog catalog = RemoteCatalog.from(
+                Map.of("id", FOLDER_ID, "contents", List.of(Map.of("name", "spec1", "id", "1"))),
+                List.of(Map.of("title", "spec1", "id", "doc1")));
+        Map<String, SpecFile> specFiles = specFiles("spec1");
+        File manifestFile = Files.createTempDirectory("apigee").resolve("publish-manifest.json").toFile();
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        when(client.getPortalName()).thenReturn("portal");
+        when(client.publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN)).thenReturn(true);
+        when(client.publishApiDocSnapshot("doc1", APIGEE_TOKEN))
+                .thenThrow(new RuntimeException("Response code 500 received."))
+                .thenReturn(null);
+
+        PublishManifest manifest = PublishManifest.load(manifestFile);
+        List<PublishResult> failedResults = publisher(client, manifest).publish(specFiles, catalog, APIGEE_TOKEN);
+        manifest.save();
+        PublishManifest reloadedManifest = PublishManifest.load(manifestFile);
+        assertThat(reloadedManifest.pendingSnapshotSpecs("organization", "portal")).containsExactly("spec1");
+        List<PublishResult> results = publisher(client, reloadedManifest).publish(specFiles, catalog, APIGEE_TOKEN);
+
+        assertThat(failedResults).extracting(PublishResult::getStatus).containsExactly(PublishResult.Status.FAILED);
+        assertThat(results).extracting(PublishResult::getStatus).containsExactly(PublishResult.Status.UNCHANGED);
+        assertThat(reloadedManifest.pendingSnapshotSpecs("organization", "portal")).isEmpty();
+        verify(client, times(1)).publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN);
+        verify(client, times(2)).publishApiDocSnapshot("doc1", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("A failed snapshot of a pending spec that was not published again is reported")
+    void testFailedPendingSnapshotReported() throws IOException {
+        RemoteCatalog catalog = RemoteCatalog.from(
+                Map.of("id", FOLDER_ID, "contents", List.of(Map.of("name", "spec1", "id", "1"))),
+                List.of(Map.of("title", "spec1", "id", "doc1"), Map.of("title", "spec2", "id", "doc2")));
+        Map<String, SpecFile> specFiles = specFiles("spec1");
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        when(client.getPortalName()).thenReturn("portal");
+        when(client.publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN)).thenReturn(false);
+        when(client.publishApiDocSnapshot("doc2", APIGEE_TOKEN)).thenThrow(new RuntimeException("Response code 500 received."));
+        PublishManifest manifest = new PublishManifest(
+                Files.createTempDirectory("apigee").resolve("publish-manifest.json").toFile());
+        manifest.addPendingSnapshots("organization", "portal", List.of("spec2"));
+
+        List<PublishResult> results = publisher(client, manifest).publish(specFiles, catalog, APIGEE_TOKEN);
+
+        assertThat(results).extracting(PublishResult::getSpecName).containsExactly("spec1", "spec2");
+        assertThat(results).extracting(PublishResult::getStatus).containsExactly(
+                PublishResult.Status.UNCHANGED, PublishResult.Status.FAILED);
+        assertThat(manifest.pendingSnapshotSpecs("organization", "portal")).containsExactly("spec2");
+    }
+
+    @Test
+    @DisplayName("Skipped snapshots are recorded as pending")
+    void testSkippedSnapshotsPending() throws IOException {
+        RemoteCatalog catalog = RemoteCatalog.from(
+                Map.of("id", FOLDER_ID, "contents", List.of(Map.of("name", "spec1", "id", "1"))),
+                List.of(Map.of("title", "spec1", "id", "doc1")));
+        Map<String, SpecFile> specFiles = specFiles("spec1");
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        when(client.getPortalName()).thenReturn("portal");
+        when(client.publishApiSpecContent("spec1", file(specFiles, "spec1"), "1", APIGEE_TOKEN)).thenReturn(true);
+        PublishManifest manifest = new PublishManifest(
+                Files.createTempDirectory("apigee").resolve("publish-manifest.json").toFile());
+
+        ApigeeSpecPublisher publisher = publisher(client, manifest);
+        publisher.setSnapshots(false);
+        List<PublishResult> results = publisher.publish(specFiles, catalog, APIGEE_TOKEN);
+
+        assertThat(results).extracting(PublishResult::getStatus).containsExactly(PublishResult.Status.PUBLISHED);
+        assertThat(manifest.pendingSnapshotSpecs("organization", "portal")).containsExactly("spec1");
+        verify(client, times(0)).publishApiDocSnapshot("doc1", APIGEE_TOKEN);
+    }
+
+    @Test
+    @DisplayName("Report results fails when any spec failed")
+    void testReportResultsFailure() {
+        List<PublishResult> results = List.of(
+                PublishResult.published("spec1"),
+                PublishResult.failed("spec2", new RuntimeException("boom")));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ApigeeSpecPublisher.reportResults(results));
+
+        assertThat(exception.getMessage()).contains("spec2");
+        assertThat(exception.getSuppressed()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Report results succeeds when no spec failed")
+    void testReportResultsSuccess() {
+        ApigeeSpecPublisher.reportResults(List.of(PublishResult.published("spec1"), PublishResult.unchanged("spec2")));
+    }
+
+    private static Map<String, SpecFile> specFiles(String... specNames) throws IOException {
+        Map<String, SpecFile> specFiles = new LinkedHashMap<>();
+        for (String specName : specNames) {
+            File specFile = Files.createTempFile(specName, ".yaml").toFile();
+            Files.write(specFile.toPath(), ("content of " + specName).getBytes(StandardCharsets.UTF_8));
+            specFiles.put(specName, new SpecFile(specName, specFile));
+        }
+        return specFiles;
+    }
+
+    private static File file(Map<String, SpecFile> specFiles, String specName) {
+        return specFiles.get(specName).getFile();
+    }
+
+    private static ApigeeSpecPublisher publisher(ApigeeHttpClient client, PublishManifest manifest) {
+        ApigeeSpecPublisher publisher = new ApigeeSpecPublisher(client, 1);
+        publisher.setManifest(manifest);
+        return publisher;
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApigeeTargetPublisherTest {
+
+    private static final String APIGEE_TOKEN = "token";
+
+    @Test
+    @DisplayName("A failing target does not prevent publishing to the other targets")
+    void testFailingTargetIsolated() {
+        File specFile = new File(getClass().getResource("test.yaml").getPath());
+        Map<String, SpecFile> specFiles = Map.of("Test API V1", new SpecFile("Test API V1", specFile));
+        PublishTarget dev = new PublishTarget("dev", "dev-organization", null, "username", "password");
+        PublishTarget prod = new PublishTarget("prod", "prod-organization", null, "username", "password");
+
+        ApigeeHttpClient devClient = Mockito.mock(ApigeeHttpClient.class);
+        when(devClient.obtainApigeeAccessToken("username", "password")).thenReturn(APIGEE_TOKEN);
+        when(devClient.getExistingSpecsFolder(APIGEE_TOKEN)).thenReturn(Map.of("id", "folderId",
+                "contents", List.of(Map.of("id", "1", "name", "Test API V1"))));
+        when(devClient.getExistingApiDocs(APIGEE_TOKEN)).thenReturn(List.of());
+        when(devClient.publishApiSpecContent(eq("Test API V1"), any(File.class), eq("1"), eq(APIGEE_TOKEN)))
+                .thenReturn(true);
+        ApigeeHttpClient prodClient = Mockito.mock(ApigeeHttpClient.class);
+        when(prodClient.obtainApigeeAccessToken("username", "password"))
+                .thenThrow(new RuntimeException("Failed to authenticate with Apigee."));
+
+        List<TargetResult> results = ApigeeTargetPublisher.publishAll(List.of(
+                publisher(dev, devClient), publisher(prod, prodClient)), specFiles);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).isFailed()).isFalse();
+        assertThat(results.get(0).getResults().get(0).getStatus()).isEqualTo(PublishResult.Status.PUBLISHED);
+        assertThat(results.get(1).isFailed()).isTrue();
+        verify(devClient).publishApiSpecContent(eq("Test API V1"), any(File.class), eq("1"), eq(APIGEE_TOKEN));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ApigeeTargetPublisher.reportResults(results));
+        assertThat(exception.getMessage()).contains("[prod]");
+    }
+
+    @Test
+    @DisplayName("Targets sharing an organization upload once and publish the snapshots of each portal")
+    void testTargetsSharingOrganization() {
+        File specFile = new File(getClass().getResource("test.yaml").getPath());
+        Map<String, SpecFile> specFiles = Map.of("Test API V1", new SpecFile("Test API V1", specFile));
+        PublishTarget internal = new PublishTarget("internal", "organization", "internal-portal", "username", "password");
+        PublishTarget external = new PublishTarget("external", "organization", "external-portal", "username", "password");
+
+        ApigeeHttpClient internalClient = client("internal-portal", "10");
+        when(internalClient.publishNewApiSpecDoc("Test API V1", "folderId", APIGEE_TOKEN)).thenReturn("1");
+        when(internalClient.publishApiSpecContent(eq("Test API V1"), any(File.class), eq("1"), eq(APIGEE_TOKEN)))
+                .thenReturn(true);
+        ApigeeHttpClient externalClient = client("external-portal", "20");
+
+        List<TargetResult> results = ApigeeTargetPublisher.publishAll(List.of(
+                publisher(internal, internalClient), publisher(external, externalClient)), specFiles);
+
+        assertThat(results).extracting(TargetResult::getTarget).containsExactly(internal, external);
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.isFailed()).isFalse();
+            assertThat(result.getResults().get(0).getStatus()).isEqualTo(PublishResult.Status.PUBLISHED);
+        });
+        verify(internalClient).publishNewApiSpecDoc("Test API V1", "folderId", APIGEE_TOKEN);
+        verify(internalClient).publishApiDocSnapshot("10", APIGEE_TOKEN);
+        verify(externalClient).publishApiDocSnapshot("20", APIGEE_TOKEN);
+        verify(externalClient, never()).publishNewApiSpecDoc(any(), any(), any());
+        verify(externalClient, never()).publishApiSpecContent(any(), any(File.class), any(), any());
+    }
+
+    private static ApigeeHttpClient client(String portalName, String apiDocId) {
+        ApigeeHttpClient client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getOrganizationName()).thenReturn("organization");
+        when(client.getPortalName()).thenReturn(portalName);
+        when(client.obtainApigeeAccessToken("username", "password")).thenReturn(APIGEE_TOKEN);
+        when(client.getExistingSpecsFolder(APIGEE_TOKEN)).thenReturn(Map.of("id", "folderId", "contents", List.of()));
+        when(client.getExistingApiDocs(APIGEE_TOKEN)).thenReturn(List.of(Map.of("id", apiDocId, "title", "Test API V1")));
+        return client;
+    }
+
+    private static ApigeeTargetPublisher publisher(PublishTarget target, ApigeeHttpClient client) {
+        ApigeeTargetPublisher publisher = new ApigeeTargetPublisher(target, client);
+        publisher.setParallelism(1);
+        return publisher;
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.everon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ApigeeTokenCacheTest {
+
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+
+    private ApigeeHttpClient client;
+    private ApigeeTokenCache tokenCache;
+
+    @BeforeEach
+    void setup() throws IOException {
+        client = Mockito.mock(ApigeeHttpClient.class);
+        when(client.getLoginUrl()).thenReturn("https://login.apigee.com/oauth/token");
+        tokenCache = new ApigeeTokenCache(Files.createTempDirectory("apigee-tokens").toFile());
+    }
+
+    @Test
+    @DisplayName("Cached access token is reused until it expires")
+    void testCachedTokenReused() {
+        when(client.obtainApigeeToken(USERNAME, PASSWORD)).thenReturn(token("access", "refresh", 1800));
+
+        assertThat(tokenCache.obtainAccessToken(client, USERNAME, PASSWORD)).isEqualTo("access");
+        assertThat(tokenCache.obtainAccessToken(client, USERNAME, PASSWORD)).isEqualTo("access");
+
+        verify(client, times(1)).obtainApigeeToken(USERNAME, PASSWORD);
+        verify(client, never()).refreshApigeeToken(anyString());
+    }
+
+    @Test
+    @DisplayName("Expired access token is refreshed with the refresh token")
+    void testExpiredTokenRefreshed() {
+        when(client.obtainApigeeToken(USERNAME, PASSWORD)).thenReturn(token("access", "refresh", 0));
+        when(client.refreshApigeeToken("refresh")).thenReturn(token("refreshed", "refresh2", 1800));
+
+        tokenCache.obtainAccessToken(client, USERNAME, PASSWORD);
+
+        assertThat(tokenCache.obtainAccessToken(client, USERNAME, PASSWORD)).isEqualTo("refreshed");
+        verify(client, times(1)).obtainApigeeToken(USERNAME, PASSWORD);
+    }
+
+    @Test
+    @DisplayName("Password grant is used when refreshing the token fails")
+    void testFailedRefreshFallsBackToPassword() {
+        when(client.obtainApigeeToken(USERNAME, PASSWORD))
+                .thenReturn(token("access", "refresh", 0), token("access2", "refresh2", 1800));
+        when(client.refreshApigeeToken("refresh")).thenThrow(new RuntimeException("Response code 401 received."));
+
+        tokenCache.obtainAccessToken(client, USERNAME, PASSWORD);
+
+        assertThat(tokenCache.obtainAccessToken(client, USERNAME, PASSWORD)).isEqualTo("access2");
+        verify(client, times(2)).obtainApigeeToken(USERNAME, PASSWORD);
+    }
+
+    private static ApigeeToken token(String accessToken, String refreshToken, long expiresInSeconds) {
+        ApigeeToken token = new ApigeeToken();
+        token.setAccessToken(accessToken);
+        token.setRefreshToken(refreshToken);
+        token.setExpiresAt(System.currentTimeMillis() + expiresInSeconds * 1000);
+        return token;
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.everon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpResponseCacheTest {
+
+    private File directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("http-cache").toFile();
+    }
+
+    @Test
+    @DisplayName("Cached responses are not served to another identity")
+    void testEntriesKeyedByIdentity() throws IOException {
+        HttpResponseCache alice = new HttpResponseCache(directory, "https://login|alice");
+        HttpResponseCache bob = new HttpResponseCache(directory, "https://login|bob");
+
+        alice.store("https://apigee/specs", 200, "\"v1\"", null, body("alice's listing"));
+
+        assertThat(alice.lookup("https://apigee/specs")).isNotNull();
+        assertThat(bob.lookup("https://apigee/specs")).isNull();
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted once the cache exceeds its maximum size")
+    void testLeastRecentlyUsedEvicted() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(directory, "https://login|alice", 25);
+
+        HttpResponseCache.Entry first = cache.store("https://apigee/1", 200, "\"v1\"", null, body("0123456789"));
+        HttpResponseCache.Entry second = cache.store("https://apigee/2", 200, "\"v1\"", null, body("0123456789"));
+        assertThat(second.getBodyFile().setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        assertThat(first.getBodyFile().setLastModified(System.currentTimeMillis() - 30_000)).isTrue();
+        cache.store("https://apigee/3", 200, "\"v1\"", null, body("0123456789"));
+
+        assertThat(cache.lookup("https://apigee/1")).isNotNull();
+        assertThat(cache.lookup("https://apigee/2")).isNull();
+        assertThat(cache.lookup("https://apigee/3")).isNotNull();
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.everon;
+
+import groovy.json.JsonException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ListingReaderTest {
+
+    @Test
+    @DisplayName("Only the requested fields of listed items are kept")
+    void testRequestedFieldsKept() {
+        String json = "{\"id\":\"folder\",\"kind\":\"Folder\",\"contents\":["
+                + "{\"id\":\"1\",\"name\":\"spec1\",\"self\":\"\\/organizations\\/org\",\"tags\":[\"a\"]},"
+                + "{\"id\":2,\"name\":\"spec2\",\"created\":\"2021-03-01\"}]}";
+
+        ListingReader.Listing listing = ListingReader.read(new StringReader(json), "contents", List.of("id", "name"));
+
+        assertThat(listing.getId()).isEqualTo("folder");
+        assertThat(listing.getNextPageToken()).isNull();
+        assertThat(listing.getItems()).containsExactly(
+                Map.of("id", "1", "name", "spec1"),
+                Map.of("id", "2", "name", "spec2"));
+    }
+
+    @Test
+    @DisplayName("Next page token is read, a null or empty token ends the listing")
+    void testNextPageToken() {
+        assertThat(ListingReader.read(new StringReader("{\"data\":[],\"nextPageToken\":\"page2\"}"),
+                "data", List.of("id")).getNextPageToken()).isEqualTo("page2");
+        assertThat(ListingReader.read(new StringReader("{\"data\":[],\"nextPageToken\":null}"),
+                "data", List.of("id")).getNextPageToken()).isNull();
+        assertThat(ListingReader.read(new StringReader("{\"data\":[],\"nextPageToken\":\"\"}"),
+                "data", List.of("id")).getNextPageToken()).isNull();
+    }
+
+    @Test
+    @DisplayName("Listing that is not a JSON object is rejected")
+    void testInvalidListing() {
+        assertThrows(JsonException.class,
+                () -> ListingReader.read(new StringReader("[]"), "data", List.of("id")));
+    }
+
+}
@@ -0,0 +1,63 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PublishMetricsTest {
+
+    @Test
+    @DisplayName("Percentiles use the nearest rank")
+    void testPercentile() {
+        List<Long> values = List.of(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 100L);
+
+        assertThat(PublishMetrics.percentile(values, 50)).isEqualTo(50L);
+        assertThat(PublishMetrics.percentile(values, 90)).isEqualTo(90L);
+        assertThat(PublishMetrics.percentile(values, 99)).isEqualTo(100L);
+        assertThat(PublishMetrics.percentile(List.of(), 50)).isEqualTo(0L);
+    }
+
+    @Test
+    @DisplayName("Report summarises requests per phase, per target and per spec")
+    @SuppressWarnings("unchecked")
+    void testReport() {
+        PublishMetrics metrics = new PublishMetrics();
+        metrics.start(PublishMetrics.Phase.LOGIN, "POST", "dev").finish(200, 0);
+        metrics.forSpec("spec", () -> {
+            PublishMetrics.RequestMetric contentGet = metrics.start(PublishMetrics.Phase.CONTENT_GET, "GET", "dev");
+            contentGet.getBytesReceived().addAndGet(1000);
+            contentGet.finish(200, 1);
+            PublishMetrics.RequestMetric contentPut = metrics.start(PublishMetrics.Phase.CONTENT_PUT, "PUT", "dev");
+            contentPut.getBytesSent().addAndGet(2000);
+            contentPut.finish(500, 0);
+            return null;
+        });
+
+        PublishTarget target = new PublishTarget("dev", "organization", null, "username", "password");
+        Map<String, Object> report = metrics.report(List.of(TargetResult.completed(target,
+                List.of(PublishResult.failed("spec", new RuntimeException("failed"))))), Duration.ofSeconds(1));
+
+        Map<String, Object> totals = (Map<String, Object>) report.get("totals");
+        assertThat(totals.get("requests")).isEqualTo(3);
+        assertThat(totals.get("failed")).isEqualTo(1);
+        assertThat(totals.get("retries")).isEqualTo(1);
+        assertThat(((Map<String, Object>) report.get("phases")).keySet())
+                .containsExactly("LOGIN", "CONTENT_GET", "CONTENT_PUT");
+        Map<String, Object> targetReport = (Map<String, Object>) ((Map<String, Object>) report.get("targets")).get("dev");
+        assertThat(targetReport.get("status")).isEqualTo("FAILED");
+        assertThat(((Map<String, Object>) targetReport.get("totals")).get("requests")).isEqualTo(3);
+        Map<String, Object> spec = (Map<String, Object>) ((Map<String, Object>) targetReport.get("specs")).get("spec");
+        assertThat(spec.get("status")).isEqualTo("FAILED");
+        assertThat(spec.get("requests")).isEqualTo(2);
+        assertThat(spec.get("bytesSent")).isEqualTo(2000L);
+        assertThat(spec.get("bytesReceived")).isEqualTo(1000L);
+        assertThat((BigDecimal) spec.get("p50Millis")).isNotNegative();
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RemoteCatalogTest {
+
+    @Test
+    @DisplayName("Catalog indexes specs and API docs by name and id")
+    void testCatalogIndexes() {
+        RemoteCatalog catalog = RemoteCatalog.from(
+                Map.of("id", "folderId", "contents", List.of(Map.of("name", "spec1", "id", "1"))),
+                List.of(Map.of("title", "spec1", "id", 11)));
+
+        assertThat(catalog.getFolderId()).isEqualTo("folderId");
+        assertThat(catalog.findSpec("spec1").getId()).isEqualTo("1");
+        assertThat(catalog.findSpecById("1").getName()).isEqualTo("spec1");
+        assertThat(catalog.findApiDoc("spec1").getId()).isEqualTo("11");
+        assertThat(catalog.findSpec("spec2")).isNull();
+    }
+
+    @Test
+    @DisplayName("Duplicate names resolve to the lowest id regardless of listing order")
+    void testDuplicateNames() {
+        RemoteCatalog catalog = RemoteCatalog.from(
+                Map.of("id", "folderId", "contents", List.of(
+                        Map.of("name", "spec1", "id", "10"),
+                        Map.of("name", "spec1", "id", "9"),
+                        Map.of("name", "spec1", "id", "11"))),
+                List.of(Map.of("title", "spec1", "id", 21), Map.of("title", "spec1", "id", 20)));
+
+        assertThat(catalog.findSpec("spec1").getId()).isEqualTo("9");
+        assertThat(catalog.findApiDoc("spec1").getId()).isEqualTo("20");
+        assertThat(catalog.getSpecs()).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Created specs are added to the catalog")
+    void testAddSpec() {
+        RemoteCatalog catalog = new RemoteCatalog("folderId");
+        RemoteSpec spec = new RemoteSpec();
+        spec.setId("1");
+        spec.setName("spec1");
+
+        catalog.addSpec(spec);
+
+        assertThat(catalog.findSpec("spec1")).isSameAs(spec);
+        assertThat(catalog.findSpecById("1")).isSameAs(spec);
+    }
+
+}
@@ -0,0 +1,52 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(2));
+
+    @Test
+    @DisplayName("Idempotent requests are retried on throttling and gateway errors")
+    void testIdempotentRequestsRetried() {
+        assertThat(retryPolicy.isRetryable("GET", 429, 0)).isTrue();
+        assertThat(retryPolicy.isRetryable("PUT", 503, 2)).isTrue();
+        assertThat(retryPolicy.isRetryable("GET", 500, 0)).isFalse();
+        assertThat(retryPolicy.isRetryable("GET", 503, 3)).isFalse();
+        assertThat(retryPolicy.isRetryable("GET", new IOException("reset"), 0)).isTrue();
+    }
+
+    @Test
+    @DisplayName("POST requests are only retried when not processed")
+    void testPostRequestsRetried() {
+        assertThat(retryPolicy.isRetryable("POST", 429, 0)).isTrue();
+        assertThat(retryPolicy.isRetryable("POST", 503, 0)).isFalse();
+        assertThat(retryPolicy.isRetryable("POST", new ConnectException("refused"), 0)).isTrue();
+        assertThat(retryPolicy.isRetryable("POST", new IOException("reset"), 0)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Retry-After header is respected and capped")
+    void testRetryAfter() {
+        assertThat(retryPolicy.delay(0, "1")).isEqualTo(Duration.ofSeconds(1));
+        assertThat(retryPolicy.delay(0, "120")).isEqualTo(Duration.ofSeconds(2));
+        assertThat(retryPolicy.delay(0, "Wed, 21 Oct 2015 07:28:00 GMT")).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("Backoff grows exponentially with jitter")
+    void testExponentialBackoff() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            Duration delay = retryPolicy.delay(attempt, null);
+            assertThat(delay.toMillis()).isBetween(0L, Math.min(2000L, 100L << attempt));
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.everon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpecBundlerTest {
+
+    private Path specs;
+    private SpecBundler bundler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        specs = Files.createTempDirectory("apigee-specs");
+        Files.createDirectories(specs.resolve("schemas"));
+        bundler = new SpecBundler(Files.createTempDirectory("apigee-bundles").toFile());
+    }
+
+    @Test
+    @DisplayName("External references are bundled as components, local and URL references are kept")
+    void testExternalReferencesBundled() throws IOException {
+        File spec = write("api.yaml", "openapi: 3.0.2\ninfo:\n  title: Test API V1\ncomponents:\n  schemas:\n"
+                + "    Pet:\n      $ref: 'schemas/pet.yaml#/Pet'\n    Pets:\n      $ref: '#/components/schemas/Pet'\n"
+                + "    Remote:\n      $ref: 'https://example.com/remote.yaml'\n");
+        write("schemas/pet.yaml", "Pet:\n  type: object\n  properties:\n    owner:\n      $ref: owner.yaml\n");
+        write("schemas/owner.yaml", "type: string\n");
+
+        File bundle = bundler.bundle(spec);
+
+        assertThat(bundle).isNotEqualTo(spec);
+        assertThat(SpecCanonicalizer.canonicalHash(bundle)).isEqualTo(SpecCanonicalizer.canonicalHash(
+                "openapi: 3.0.2\ninfo:\n  title: Test API V1\ncomponents:\n  schemas:\n"
+                        + "    Pet: {type: object, properties: {owner: {$ref: '#/components/schemas/owner'}}}\n"
+                        + "    Pets: {$ref: '#/components/schemas/Pet'}\n"
+                        + "    Remote: {$ref: 'https://example.com/remote.yaml'}\n"
+                        + "    owner: {type: string}\n"));
+        assertThat(ApigeePublishPlugin.findSpecTitle(bundle)).isEqualTo("Test API V1");
+    }
+
+    @Test
+    @DisplayName("Recursive schemas of a referenced file are bundled as recursive components")
+    void testRecursiveSchemasBundled() throws IOException {
+        File spec = write("api.yaml", "openapi: 3.0.2\ninfo:\n  title: Test API V1\npaths:\n  /tree:\n    get:\n"
+                + "      responses:\n        '200':\n          description: OK\n          content:\n"
+                + "            application/json:\n              schema:\n                $ref: 'schemas/tree.yaml#/Node'\n");
+        write("schemas/tree.yaml", "Node:\n  type: object\n  properties:\n    children:\n      type: array\n"
+                + "      items:\n        $ref: '#/Node'\n");
+
+        File bundle = bundler.bundle(spec);
+
+        assertThat(SpecCanonicalizer.canonicalHash(bundle)).isEqualTo(SpecCanonicalizer.canonicalHash(
+                "openapi: 3.0.2\ninfo:\n  title: Test API V1\npaths:\n  /tree:\n    get:\n"
+                        + "      responses:\n        '200':\n          description: OK\n          content:\n"
+                        + "            application/json:\n              schema: {$ref: '#/components/schemas/Node'}\n"
+                        + "components:\n  schemas:\n    Node:\n      type: object\n      properties:\n"
+                        + "        children: {type: array, items: {$ref: '#/components/schemas/Node'}}\n"));
+    }
+
+    @Test
+    @DisplayName("Bundles are reused until a referenced file changes")
+    void testBundleReusedUntilInputChanges() throws IOException {
+        File spec = write("api.yaml", "openapi: 3.0.2\ninfo:\n  title: Test API V1\nPet:\n  $ref: schemas/pet.yaml\n");
+        write("schemas/pet.yaml", "type: object\n");
+        File bundle = bundler.bundle(spec);
+        long lastModified = bundle.lastModified();
+
+        assertThat(bundler.bundle(spec)).isEqualTo(bundle);
+        assertThat(bundle.lastModified()).isEqualTo(lastModified);
+
+        write("schemas/pet.yaml", "type: string\n");
+        assertThat(new String(Files.readAllBytes(bundler.bundle(spec).toPath()), StandardCharsets.UTF_8))
+                .contains("type: string");
+    }
+
+    @Test
+    @DisplayName("The files a bundle was made of are recorded")
+    void testRecordedInputs() throws IOException {
+        File spec = write("api.yaml", "openapi: 3.0.2\ninfo:\n  title: Test API V1\nPet:\n  $ref: schemas/pet.yaml\n");
+        File pet = write("schemas/pet.yaml", "type: object\n");
+        assertThat(bundler.recordedInputs(spec)).isEmpty();
+
+        bundler.bundle(spec);
+
+        assertThat(bundler.recordedInputs(spec)).containsExactlyInAnyOrder(spec.getCanonicalFile(), pet.getCanonicalFile());
+    }
+
+    @Test
+    @DisplayName("Specs without external references are not bundled")
+    void testSpecWithoutExternalReferences() throws IOException {
+        File spec = write("api.yaml", "openapi: 3.0.2\ninfo:\n  title: Test API V1\n");
+
+        assertThat(bundler.bundle(spec)).isEqualTo(spec.getCanonicalFile());
+    }
+
+    @Test
+    @DisplayName("Circular references that cannot be components fail")
+    void testCircularReferences() throws IOException {
+        File spec = write("api.yaml", "Pet:\n  $ref: schemas/pet.yaml\n");
+        write("schemas/pet.yaml", "owner:\n  $ref: ../api.yaml\n");
+
+        assertThrows(RuntimeException.class, () -> bundler.bundle(spec));
+    }
+
+    private File write(String path, String content) throws IOException {
+        return Files.write(specs.resolve(path), content.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+
+}
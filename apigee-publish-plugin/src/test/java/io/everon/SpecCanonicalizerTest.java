@@ -0,0 +1,34 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpecCanonicalizerTest {
+
+    private static final String SPEC = "openapi: 3.0.2\ninfo:\n  title: Test API V1\n  version: '1'\npaths: {}\n";
+
+    @Test
+    @DisplayName("Formatting, comments, line endings and key order do not change the canonical hash")
+    void testFormattingIgnored() {
+        String reformatted = "# generated\r\npaths: {}\r\ninfo:\r\n    version: \"1\"\r\n    title: 'Test API V1'   \r\n"
+                + "openapi: 3.0.2\r\n";
+        String json = "{\"info\": {\"version\": \"1\", \"title\": \"Test API V1\"}, \"openapi\": 3.0.2, \"paths\": {}}";
+
+        assertThat(SpecCanonicalizer.canonicalHash(reformatted)).isEqualTo(SpecCanonicalizer.canonicalHash(SPEC));
+        assertThat(SpecCanonicalizer.canonicalHash(json)).isEqualTo(SpecCanonicalizer.canonicalHash(SPEC));
+    }
+
+    @Test
+    @DisplayName("Changed values, types and sequence order change the canonical hash")
+    void testContentChangesDetected() {
+        assertThat(SpecCanonicalizer.canonicalHash(SPEC.replace("Test API V1", "Test API V2")))
+                .isNotEqualTo(SpecCanonicalizer.canonicalHash(SPEC));
+        assertThat(SpecCanonicalizer.canonicalHash("version: 1"))
+                .isNotEqualTo(SpecCanonicalizer.canonicalHash("version: '1'"));
+        assertThat(SpecCanonicalizer.canonicalHash("tags: [a, b]"))
+                .isNotEqualTo(SpecCanonicalizer.canonicalHash("tags: [b, a]"));
+    }
+
+}
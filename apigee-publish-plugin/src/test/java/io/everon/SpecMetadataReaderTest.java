@@ -0,0 +1,68 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpecMetadataReaderTest {
+
+    @Test
+    @DisplayName("Read info title and version")
+    void testReadTitleAndVersion() {
+        SpecMetadata metadata = SpecMetadataReader.read(
+                "openapi: 3.0.2\ninfo:\n  title: \"Test API V1\"\n  version: 1.0.0\npaths: {}\n");
+
+        assertThat(metadata.getTitle()).isEqualTo("Test API V1");
+        assertThat(metadata.getVersion()).isEqualTo("1.0.0");
+    }
+
+    @Test
+    @DisplayName("Nested titles are not mistaken for info title")
+    void testNestedTitlesIgnored() {
+        SpecMetadata metadata = SpecMetadataReader.read("openapi: 3.0.2\n" +
+                "components:\n" +
+                "  schemas:\n" +
+                "    Charger:\n" +
+                "      title: Charger schema\n" +
+                "      properties:\n" +
+                "        info:\n" +
+                "          title: Nested info\n" +
+                "info:\n" +
+                "  description: |\n" +
+                "    title: not a title\n" +
+                "  title: Test API V1\n");
+
+        assertThat(metadata.getTitle()).isEqualTo("Test API V1");
+        assertThat(metadata.getVersion()).isNull();
+    }
+
+    @Test
+    @DisplayName("Read info title of JSON spec")
+    void testReadJsonSpec() {
+        SpecMetadata metadata = SpecMetadataReader.read("{ \"openapi\": \"3.0.2\", " +
+                "\"components\": { \"schemas\": { \"Charger\": { \"title\": \"Charger schema\" } } }, " +
+                "\"info\": { \"title\": \"Test API V1\", \"version\": \"1.0.0\" } }");
+
+        assertThat(metadata.getTitle()).isEqualTo("Test API V1");
+        assertThat(metadata.getVersion()).isEqualTo("1.0.0");
+    }
+
+    @Test
+    @DisplayName("Parsing stops once info is read")
+    void testRemainderOfSpecNotParsed() {
+        SpecMetadata metadata = SpecMetadataReader.read(
+                "info:\n  title: Test API V1\n  version: 1.0.0\npaths: [ { : not yaml");
+
+        assertThat(metadata.getTitle()).isEqualTo("Test API V1");
+    }
+
+    @Test
+    @DisplayName("Missing info title")
+    void testTitleNotFound() {
+        assertThrows(RuntimeException.class,
+                () -> SpecMetadataReader.read("openapi: 3.0.2\ncomponents:\n  schemas:\n    A:\n      title: A\n"));
+    }
+
+}
@@ -0,0 +1,52 @@
+package io.everon;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpecWatcherTest {
+
+    @Test
+    @DisplayName("A burst of changes is reported once with the watched files only")
+    void testChangesDebounced() throws Exception {
+        Path directory = Files.createTempDirectory("apigee-watch");
+        File first = write(directory.resolve("first.yaml"), "first");
+        File second = write(directory.resolve("second.yaml"), "second");
+        List<Set<File>> changes = new CopyOnWriteArrayList<>();
+
+        try (SpecWatcher watcher = new SpecWatcher(List.of(first, second), Duration.ofMillis(500))) {
+            Thread thread = new Thread(() -> watcher.watch(changes::add));
+            thread.start();
+            Thread.sleep(200);
+
+            write(first.toPath(), "first changed");
+            write(first.toPath(), "first changed again");
+            write(second.toPath(), "second changed");
+            write(directory.resolve("unrelated.txt"), "unrelated");
+            Thread.sleep(2000);
+
+            watcher.close();
+            thread.join(2000);
+            assertThat(thread.isAlive()).isFalse();
+        }
+
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).extracting(File::getName).containsExactlyInAnyOrder("first.yaml", "second.yaml");
+    }
+
+    private static File write(Path path, String content) throws IOException {
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+
+}